@@ -24,15 +24,34 @@ public class GarnRechnerProzedural extends JFrame {
     // UI Elements that need translation updates
     private final JButton addYarnBtn = new JButton();
     private final JButton calcBtn = new JButton();
-    
-    // Global Data
-    private static Map<String, List<FiberDef>> loadedYarns = new LinkedHashMap<>();
-    private static Set<String> loadedFibers = new TreeSet<>();
-    
-    private static GarnRechnerProzedural instance;
+    private final JButton openProjectBtn = new JButton();
+    private final JButton saveProjectBtn = new JButton();
+    private final JButton recentBtn = new JButton();
+    private final JButton importBtn = new JButton();
+    private final JButton sweepBtn = new JButton();
+    private final JButton undoBtn = new JButton();
+    private final JButton redoBtn = new JButton();
+
+    private final ProjectHistory history = new ProjectHistory(new ProjectHistory.View() {
+        @Override public int size() { return yarnPanels.size(); }
+        @Override public int indexOf(YarnPanel yp) { return yarnPanels.indexOf(yp); }
+        @Override public ProjectYarn capture(int index) { return yarnPanels.get(index).toProjectYarn(); }
+        @Override public void apply(int index, ProjectYarn py) { yarnPanels.get(index).applyProjectYarn(py); }
+        @Override public void insert(int index, ProjectYarn py) { insertYarnAt(index, py); }
+        @Override public void remove(int index) { removeYarnAt(index); }
+        @Override public void historyChanged() { Events.post(Events.PROJECT_EDITED, history); }
+    });
+
+    // Project currently being streamed into the view (null when fully loaded)
+    private ProjectFile.Reader pendingProject;
+    private static final int PROJECT_CHUNK = 20;
+
+    static final String YARNS_FILE = "yarns.json";
+    static final String FIBERS_FILE = "fibers.json";
+    static final String TAXONOMY_FILE = "fiber_taxonomy.json";
+    static final String FIBER_NAMES_FILE = "fiber_names.json";
 
     public GarnRechnerProzedural() {
-        instance = this;
         setDefaultCloseOperation(EXIT_ON_CLOSE);
         setSize(1000, 750);
         
@@ -53,6 +72,16 @@ public class GarnRechnerProzedural extends JFrame {
         langPanel.add(btnDe);
         langPanel.add(btnEn);
         topBar.add(langPanel, BorderLayout.EAST);
+
+        undoBtn.addActionListener(e -> history.undo());
+        redoBtn.addActionListener(e -> history.redo());
+        JPanel historyPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 5));
+        historyPanel.add(undoBtn);
+        historyPanel.add(redoBtn);
+        topBar.add(historyPanel, BorderLayout.WEST);
+        bindKey(KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_Z, java.awt.event.InputEvent.CTRL_DOWN_MASK), "undo", history::undo);
+        bindKey(KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_Y, java.awt.event.InputEvent.CTRL_DOWN_MASK), "redo", history::redo);
+        bindKey(KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_Z, java.awt.event.InputEvent.CTRL_DOWN_MASK | java.awt.event.InputEvent.SHIFT_DOWN_MASK), "redo", history::redo);
         
         mainPanel.add(topBar, BorderLayout.NORTH);
 
@@ -67,37 +96,70 @@ public class GarnRechnerProzedural extends JFrame {
         // --- Bottom (Actions) ---
         addYarnBtn.addActionListener(e -> addYarn());
         calcBtn.addActionListener(e -> calculateTotals());
+        openProjectBtn.addActionListener(e -> openProjectDialog());
+        saveProjectBtn.addActionListener(e -> saveProjectDialog());
+        recentBtn.addActionListener(e -> showRecentProjects());
+        importBtn.addActionListener(e -> importCatalogDialog());
+        sweepBtn.addActionListener(e -> showSweepDialog());
 
         JPanel bottom = new JPanel(new FlowLayout(FlowLayout.LEFT));
         bottom.add(addYarnBtn);
         bottom.add(calcBtn);
+        bottom.add(sweepBtn);
+        bottom.add(Box.createHorizontalStrut(20));
+        bottom.add(openProjectBtn);
+        bottom.add(saveProjectBtn);
+        bottom.add(recentBtn);
+        bottom.add(Box.createHorizontalStrut(20));
+        bottom.add(importBtn);
 
         mainPanel.add(bottom, BorderLayout.SOUTH);
 
         // Initial setup
-        Text.addListener(this::updateTexts);
+        Events.subscribe(this, Events.LANGUAGE, (f, lang) -> f.updateTexts());
+        Events.subscribe(this, Events.PROJECT_EDITED, (f, h) -> f.updateUndoButtons());
+        Events.subscribe(this, Events.YARNS_CHANGED, GarnRechnerProzedural::onYarnsChanged);
         addYarn();
+        history.clear();
         updateTexts(); 
     }
 
-    public static GarnRechnerProzedural getInstance() {
-        return instance;
+    private void bindKey(KeyStroke key, String name, Runnable action) {
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(key, name);
+        getRootPane().getActionMap().put(name, new AbstractAction() {
+            @Override public void actionPerformed(java.awt.event.ActionEvent e) { action.run(); }
+        });
+    }
+
+    private void updateUndoButtons() {
+        undoBtn.setEnabled(history.canUndo());
+        redoBtn.setEnabled(history.canRedo());
     }
 
     private void updateTexts() {
         setTitle(Text.get("app_title"));
         addYarnBtn.setText(Text.get("btn_add_yarn"));
         calcBtn.setText(Text.get("btn_calc"));
-        
-        // Trigger updates in children and refresh indices to keep titles correct
-        updateYarnIndices();
+        openProjectBtn.setText(Text.get("btn_open_project"));
+        saveProjectBtn.setText(Text.get("btn_save_project"));
+        recentBtn.setText(Text.get("btn_recent"));
+        importBtn.setText(Text.get("btn_import"));
+        sweepBtn.setText(Text.get("btn_sweep"));
+        undoBtn.setText(Text.get("btn_undo"));
+        undoBtn.setToolTipText(Text.get("tip_undo"));
+        redoBtn.setText(Text.get("btn_redo"));
+        redoBtn.setToolTipText(Text.get("tip_redo"));
+        updateUndoButtons();
+        // The yarn panels update their own texts
         revalidate();
         repaint();
     }
 
-    private void addYarn() {
+    // Package-private for the load harness, like calculateTotals and getYarnPanels
+    void addYarn() {
+        finishProjectLoading();
         // Create panel with a callback to remove itself correctly
-        YarnPanel yp = new YarnPanel(this::removeYarn);
+        YarnPanel yp = new YarnPanel(this::removeYarn, history);
         
         yarnPanels.add(yp);
         yarnListContainer.add(yp);
@@ -106,10 +168,29 @@ public class GarnRechnerProzedural extends JFrame {
         
         yarnListContainer.revalidate();
         yarnListContainer.repaint();
+        history.inserted(yarnPanels.size() - 1);
     }
 
     private void removeYarn(YarnPanel yp) {
-        yarnPanels.remove(yp);
+        int index = yarnPanels.indexOf(yp);
+        if (index < 0) return;
+        history.removing(index);
+        removeYarnAt(index);
+    }
+
+    // Used by addYarn/removeYarn and by undo/redo (which must not record new steps)
+    private void insertYarnAt(int index, ProjectYarn py) {
+        YarnPanel yp = new YarnPanel(this::removeYarn, history);
+        yp.applyProjectYarn(py);
+        yarnPanels.add(index, yp);
+        yarnListContainer.add(yp, index);
+        updateYarnIndices();
+        yarnListContainer.revalidate();
+        yarnListContainer.repaint();
+    }
+
+    private void removeYarnAt(int index) {
+        YarnPanel yp = yarnPanels.remove(index);
         yarnListContainer.remove(yp);
         updateYarnIndices(); // Re-number remaining yarns
         yarnListContainer.revalidate();
@@ -122,227 +203,1035 @@ public class GarnRechnerProzedural extends JFrame {
         }
     }
 
-    public void refreshYarnDropdowns() {
+    // Pushes only the added/removed/updated entries to the dropdowns. The frame fans this
+    // out itself (instead of each panel subscribing) so the history sees the panels before
+    // and after the catalog change.
+    private void onYarnsChanged(Catalog.Commit c) {
+        CatalogDiff diff = c.yarnDiff();
+        if (diff.isEmpty()) return;
+        history.flush();
         for (YarnPanel yp : yarnPanels) {
-            yp.reloadYarnDropdown();
+            yp.applyYarnDiff(diff, c.after);
+        }
+        // Catalog updates are not undoable edits; only the model follows them
+        history.resync();
+        ProjectIndex.catalogChanged(c, diff, this::showLabelChanges);
+    }
+
+    void calculateTotals() {
+        finishProjectLoading();
+        if (yarnPanels.isEmpty()) {
+            JOptionPane.showMessageDialog(this, Text.get("msg_add_one_yarn"));
+            return;
+        }
+
+        ValidationIssues issues = validateYarns(yarnPanels);
+        if (!issues.isEmpty()) {
+            showIssues(issues);
+            return;
+        }
+
+        Totals totals = computeTotals(yarnPanels);
+        Map<String, Double> fiberWeight = totals.fiberWeight;
+        double totalWeight = totals.total;
+        Locale loc = Text.current.locale;
+
+        if (totalWeight <= 0.0) {
+            JOptionPane.showMessageDialog(this, Text.get("msg_total_zero"));
+            return;
         }
+
+        // Output; roll-up level and the "other fibers" threshold can be changed in the dialog.
+        // The shares are rounded (largest remainder method) after rolling up.
+        FiberTaxonomy taxonomy = FiberTaxonomy.current();
+        String[] cols = {Text.get("col_fiber"), Text.get("col_share")};
+        javax.swing.table.DefaultTableModel model = new javax.swing.table.DefaultTableModel(cols, 0) {
+            @Override public boolean isCellEditable(int row, int column) { return false; }
+        };
+        List<Map.Entry<String, Double>> shown = new ArrayList<>();
+        List<Long> shownTenths = new ArrayList<>();
+        JTextArea labelArea = new JTextArea(2, 30);
+        labelArea.setEditable(false);
+        labelArea.setLineWrap(true);
+        labelArea.setWrapStyleWord(true);
+        LabelGenerator labelDe = new LabelGenerator(Lang.DE), labelEn = new LabelGenerator(Lang.EN);
+
+        JComboBox<String> levelBox = new JComboBox<>();
+        levelBox.addItem(Text.get("rollup_none"));
+        for (int l = 0; l < taxonomy.levels(); l++) levelBox.addItem(String.format(Text.get("rollup_level"), l + 1));
+        levelBox.setEnabled(!taxonomy.isEmpty());
+        JSpinner otherSpinner = new JSpinner(new SpinnerNumberModel(0.0, 0.0, 50.0, 0.5));
+
+        double total = totalWeight;
+        Runnable refresh = () -> {
+            int level = levelBox.getSelectedIndex() - 1;
+            double other = ((Number) otherSpinner.getValue()).doubleValue();
+            List<Map.Entry<String, Double>> groups = Composition.rollUp(fiberWeight, total, taxonomy, level, other, Text.get("other_fibers"));
+            double[] weights = new double[groups.size()];
+            for (int i = 0; i < weights.length; i++) weights[i] = groups.get(i).getValue();
+            long[] tenths = Composition.roundToTenths(weights, total);
+
+            shown.clear();
+            shownTenths.clear();
+            model.setRowCount(0);
+            for (int i = 0; i < weights.length; i++) {
+                shown.add(groups.get(i));
+                shownTenths.add(tenths[i]);
+                model.addRow(new Object[] { groups.get(i).getKey(), Numbers.formatTenths(tenths[i]) });
+            }
+            labelArea.setText("DE: " + labelDe.render(groups, total) + "\nEN: " + labelEn.render(groups, total));
+        };
+        refresh.run();
+        levelBox.addActionListener(e -> refresh.run());
+        otherSpinner.addChangeListener(e -> refresh.run());
+
+        JTable table = new JTable(model);
+        table.setEnabled(false);
+        JScrollPane sp = new JScrollPane(table);
+        sp.setPreferredSize(new Dimension(400, 250));
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        controls.add(new JLabel(Text.get("lbl_rollup")));
+        controls.add(levelBox);
+        controls.add(Box.createHorizontalStrut(10));
+        controls.add(new JLabel(Text.get("lbl_other_below")));
+        controls.add(otherSpinner);
+        controls.add(new JLabel("%"));
+        JScrollPane labelPane = new JScrollPane(labelArea);
+        labelPane.setBorder(BorderFactory.createTitledBorder(Text.get("lbl_care_label")));
+        JPanel content = new JPanel(new BorderLayout(0, 5));
+        content.add(controls, BorderLayout.NORTH);
+        content.add(sp, BorderLayout.CENTER);
+        content.add(labelPane, BorderLayout.SOUTH);
+
+        Object[] options = {Text.get("btn_ok"), Text.get("btn_copy"), Text.get("btn_export")};
+        int result = JOptionPane.showOptionDialog(
+                this,
+                content,
+                String.format(loc, Text.get("title_result"), totalWeight),
+                JOptionPane.YES_NO_OPTION,
+                JOptionPane.INFORMATION_MESSAGE,
+                null,
+                options,
+                options[0]
+        );
+
+        if (result == 1) { // Copy
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < cols.length; i++) {
+                sb.append(cols[i]);
+                if (i < cols.length - 1) sb.append("\t");
+            }
+            sb.append("\n");
+            for (int r = 0; r < model.getRowCount(); r++) {
+                for (int i = 0; i < cols.length; i++) {
+                    sb.append(model.getValueAt(r, i));
+                    if (i < cols.length - 1) sb.append("\t");
+                }
+                sb.append("\n");
+            }
+            StringSelection selection = new StringSelection(sb.toString());
+            Toolkit.getDefaultToolkit().getSystemClipboard().setContents(selection, null);
+            JOptionPane.showMessageDialog(this, Text.get("msg_copied"));
+        } else if (result == 2) { // Export
+            exportResults(w -> {
+                w.beginRecipe(Text.get("app_title"), total);
+                for (int i = 0; i < shown.size(); i++) w.share(shown.get(i).getKey(), shownTenths.get(i).intValue());
+                w.endRecipe();
+            });
+        }
+    }
+
+    static final class Totals {
+        final Map<String, Double> fiberWeight;   // by normalized fiber name, in order of appearance
+        final double total;
+        Totals(Map<String, Double> fiberWeight, double total) { this.fiberWeight = fiberWeight; this.total = total; }
     }
 
-    public void refreshFiberDropdowns() {
+    // Fiber weights of the (validated) yarns; no dialogs
+    static Totals computeTotals(List<YarnPanel> yarnPanels) {
+        Map<String, Double> fiberWeight = new LinkedHashMap<>();
+        double totalWeight = 0.0;
+
         for (YarnPanel yp : yarnPanels) {
+            if (!yp.isDisplayableOrAttached()) continue;
+
+            double grams = yp.getGrams();
+            totalWeight += grams;
             for (FiberRow row : yp.getRawFiberRows()) {
-                row.reloadFiberDropdown();
+                double w = grams * (row.getPercent() / 100.0);
+                fiberWeight.merge(normalizeName(row.getFiberName()), w, Double::sum);
             }
         }
+        return new Totals(fiberWeight, totalWeight);
     }
 
-    private void calculateTotals() {
-        if (yarnPanels.isEmpty()) {
-            JOptionPane.showMessageDialog(this, Text.get("msg_add_one_yarn"));
-            return;
+    // Checks all yarns at once and marks every offending field
+    static ValidationIssues validateYarns(List<YarnPanel> yarnPanels) {
+        ValidationIssues issues = new ValidationIssues();
+        // Same yarns as computeTotals: panels already removed from the list are skipped
+        for (int i = 0; i < yarnPanels.size(); i++) {
+            YarnPanel yp = yarnPanels.get(i);
+            if (!yp.isDisplayableOrAttached()) continue;
+            Validator.checkYarn(i, yp.getGramsOrNaN(), yp.getRawFibers(), null, issues);
+        }
+        for (int i = 0; i < yarnPanels.size(); i++) {
+            if (yarnPanels.get(i).isDisplayableOrAttached()) yarnPanels.get(i).showIssues(issues, i);
         }
+        return issues;
+    }
 
-        Map<String, Double> fiberWeight = new LinkedHashMap<>();
-        double totalWeight = 0.0;
-        Locale loc = Text.current.locale;
+    private void showIssues(ValidationIssues issues) {
+        StringBuilder sb = new StringBuilder(Text.get("msg_issues")).append('\n');
+        int shown = Math.min(issues.size(), 15);
+        for (int i = 0; i < shown; i++) sb.append("\n• ").append(issues.message(i));
+        if (issues.size() > shown) sb.append("\n").append(String.format(Text.get("msg_issues_more"), issues.size() - shown));
+        JOptionPane.showMessageDialog(this, sb.toString(), Text.get("dlg_title_warn"), JOptionPane.WARNING_MESSAGE);
+    }
 
-        try {
-            for (YarnPanel yp : yarnPanels) {
-                if (!yp.isDisplayableOrAttached()) continue;
+    // Lists the saved projects whose rounded composition changed with the catalog, and
+    // says so if they could not be marked
+    private void showLabelChanges(List<ProjectIndex.Change> changes, IOException flagError) {
+        if (changes.isEmpty()) return;
+        StringBuilder sb = new StringBuilder(Text.get("msg_labels_changed")).append('\n');
+        int shown = Math.min(changes.size(), 15);
+        for (int i = 0; i < shown; i++) {
+            ProjectIndex.Change ch = changes.get(i);
+            sb.append("\n• ").append(String.format(Text.get("label_change"), ch.project.getName(),
+                    ch.before == null ? Text.get("label_missing") : ch.before,
+                    ch.after == null ? Text.get("label_missing") : ch.after));
+        }
+        if (changes.size() > shown) sb.append("\n").append(String.format(Text.get("msg_issues_more"), changes.size() - shown));
+        if (flagError != null) sb.append("\n\n").append(Text.get("err_flags_write")).append("\n").append(flagError.getMessage());
+        JOptionPane.showMessageDialog(this, sb.toString(), Text.get("dlg_title_warn"),
+                flagError != null ? JOptionPane.WARNING_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
+    }
 
-                double grams = yp.getGrams();
-                if (grams < 0) throw new IllegalArgumentException(Text.get("err_grams_neg"));
-                totalWeight += grams;
+    // --- Result Export ---
 
-                double percentSum = yp.getPercentSum();
-                if (Math.abs(percentSum - 100.0) > 0.09) {
-                    throw new IllegalArgumentException(String.format(loc, Text.get("err_sum_mismatch"), percentSum));
-                }
+    interface ExportJob {
+        void writeTo(ResultWriter w) throws IOException;
+    }
+
+    // The chosen file, with the extension of the selected filter if it has neither .csv nor .json
+    private static File exportTarget(File chosen, boolean jsonFilter) {
+        String lower = chosen.getName().toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".csv") || lower.endsWith(".json")) return chosen;
+        return new File(chosen.getPath() + (jsonFilter ? ".json" : ".csv"));
+    }
 
-                for (FiberRow row : yp.getFiberRows()) {
-                    String name = row.getFiberName().trim();
-                    if (name.isEmpty()) throw new IllegalArgumentException(Text.get("err_fiber_empty"));
+    // Asks for the target file (CSV or JSON by extension) and streams the rows in the background
+    private void exportResults(ExportJob job) {
+        javax.swing.filechooser.FileNameExtensionFilter csv = new javax.swing.filechooser.FileNameExtensionFilter(Text.get("filter_csv"), "csv");
+        javax.swing.filechooser.FileNameExtensionFilter json = new javax.swing.filechooser.FileNameExtensionFilter(Text.get("filter_json"), "json");
+        JFileChooser fc = new JFileChooser(new File(".")) {
+            // Asks before replacing the file that will actually be written (with its extension)
+            @Override
+            public void approveSelection() {
+                File target = exportTarget(getSelectedFile(), getFileFilter() == json);
+                if (target.exists() && JOptionPane.showConfirmDialog(this, String.format(Text.get("dlg_overwrite_file"), target.getName()),
+                        Text.get("dlg_title_warn"), JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) return;
+                super.approveSelection();
+            }
+        };
+        fc.addChoosableFileFilter(csv);
+        fc.addChoosableFileFilter(json);
+        fc.setFileFilter(csv);
+        JCheckBox localized = new JCheckBox(Text.get("chk_localized_numbers"), true);
+        fc.setAccessory(localized);
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
 
-                    double p = row.getPercent();
-                    if (p < 0) throw new IllegalArgumentException(Text.get("err_percent_neg"));
+        File f = exportTarget(fc.getSelectedFile(), fc.getFileFilter() == json);
+        ResultWriter.Format format = f.getName().toLowerCase(Locale.ROOT).endsWith(".json") ? ResultWriter.Format.JSON : ResultWriter.Format.CSV;
+        Locale numbers = localized.isSelected() ? Text.current.locale : Locale.ROOT;
 
-                    double w = grams * (p / 100.0);
-                    fiberWeight.merge(normalizeName(name), w, Double::sum);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws IOException {
+                try (ResultWriter w = ResultWriter.open(f, format, numbers)) {
+                    job.writeTo(w);
+                    return w.getRows();
                 }
             }
 
-            if (totalWeight <= 0.0) {
-                JOptionPane.showMessageDialog(this, Text.get("msg_total_zero"));
-                return;
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    JOptionPane.showMessageDialog(GarnRechnerProzedural.this, String.format(Text.current.locale, Text.get("msg_exported"), get(), f.getName()));
+                } catch (InterruptedException | java.util.concurrent.ExecutionException ex) {
+                    JOptionPane.showMessageDialog(GarnRechnerProzedural.this, Text.get("err_export") + "\n" + errorMessage(ex));
+                }
             }
+        }.execute();
+    }
 
-            // --- LARGEST REMAINDER METHOD ALGORITHM ---
-            
-            // 1. Prepare Data
-            List<Map.Entry<String, Double>> entries = new ArrayList<>(fiberWeight.entrySet());
-            entries.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+    // Message of the exception a SwingWorker or CompletableFuture failed with, without the
+    // wrappers around it; never null (interrupts have no cause)
+    static String errorMessage(Throwable ex) {
+        Throwable cause = ex;
+        while ((cause instanceof java.util.concurrent.ExecutionException || cause instanceof java.util.concurrent.CompletionException
+                || cause instanceof java.io.UncheckedIOException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
 
-            int n = entries.size();
-            long[] tenths = new long[n];
-            double[] exactPercents = new double[n];
-            long sumTenths = 0;
+    // --- Project Files ---
 
-            // 2. Initial Rounding
-            for (int i = 0; i < n; i++) {
-                double grams = entries.get(i).getValue();
-                double exact = (grams / totalWeight) * 100.0;
-                exactPercents[i] = exact;
-                tenths[i] = Math.round(exact * 10.0);
-                sumTenths += tenths[i];
-            }
-
-            // 3. Calculate Error
-            long diff = 1000 - sumTenths; 
-            
-            // 4. Distribute difference
-            if (diff != 0) {
-                Integer[] indices = new Integer[n];
-                for (int i = 0; i < n; i++) indices[i] = i;
-
-                if (diff > 0) {
-                    Arrays.sort(indices, (i1, i2) -> Double.compare(
-                        (exactPercents[i2] * 10.0 - tenths[i2]), 
-                        (exactPercents[i1] * 10.0 - tenths[i1])
-                    ));
-                    for (int k = 0; k < diff && k < n; k++) tenths[indices[k]]++;
-                } else {
-                    Arrays.sort(indices, (i1, i2) -> Double.compare(
-                        (tenths[i2] - exactPercents[i2] * 10.0),
-                        (tenths[i1] - exactPercents[i1] * 10.0)
-                    ));
-                    long toRemove = Math.abs(diff);
-                    for (int k = 0; k < toRemove && k < n; k++) tenths[indices[k]]--;
+    private void openProjectDialog() {
+        JFileChooser fc = new JFileChooser(new File("."));
+        fc.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(Text.get("filter_project"), ProjectFile.EXTENSION));
+        if (fc.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            openProject(fc.getSelectedFile());
+        }
+    }
+
+    private void saveProjectDialog() {
+        finishProjectLoading();
+        // Invalid grams would be saved as 0 g. Unfinished fibers may be saved, calculating reports them.
+        ValidationIssues all = validateYarns(yarnPanels), grams = new ValidationIssues();
+        for (int i = 0; i < all.size(); i++) {
+            ValidationIssues.Kind k = all.kind(i);
+            if (k == ValidationIssues.Kind.GRAMS_INVALID || k == ValidationIssues.Kind.GRAMS_NEGATIVE) grams.add(k, all.yarn(i), all.fiber(i), all.value(i), null);
+        }
+        if (!grams.isEmpty()) {
+            showIssues(grams);
+            return;
+        }
+        JFileChooser fc = new JFileChooser(new File("."));
+        fc.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(Text.get("filter_project"), ProjectFile.EXTENSION));
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        File f = fc.getSelectedFile();
+        if (!f.getName().toLowerCase(Locale.ROOT).endsWith("." + ProjectFile.EXTENSION)) {
+            f = new File(f.getPath() + "." + ProjectFile.EXTENSION);
+        }
+        List<ProjectYarn> yarns = captureProject();
+        try {
+            ProjectFile.write(f, yarns);
+            RecentProjects.touch(f, yarns.size());
+            ProjectIndex.update(f, ProjectIndex.refsOf(yarns));
+            JOptionPane.showMessageDialog(this, String.format(Text.get("msg_project_saved"), f.getName()));
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, Text.get("err_project_write") + "\n" + ex.getMessage());
+        }
+    }
+
+    private void showRecentProjects() {
+        JPopupMenu menu = new JPopupMenu();
+        List<RecentProjects.Entry> entries = RecentProjects.load();
+        if (entries.isEmpty()) {
+            JMenuItem none = new JMenuItem(Text.get("msg_no_recent"));
+            none.setEnabled(false);
+            menu.add(none);
+        }
+        for (RecentProjects.Entry entry : entries) {
+            String key = ProjectIndex.isStale(entry.file) ? "recent_entry_stale" : "recent_entry";
+            JMenuItem item = new JMenuItem(String.format(Text.get(key), entry.file.getName(), entry.yarnCount));
+            item.setToolTipText(entry.file.getPath());
+            item.addActionListener(e -> openProject(entry.file));
+            menu.add(item);
+        }
+        menu.show(recentBtn, 0, recentBtn.getHeight());
+    }
+
+    List<YarnPanel> getYarnPanels() { return Collections.unmodifiableList(yarnPanels); }
+
+    List<ProjectYarn> captureProject() {
+        List<ProjectYarn> res = new ArrayList<>(yarnPanels.size());
+        for (YarnPanel yp : yarnPanels) res.add(yp.toProjectYarn());
+        return res;
+    }
+
+    // Reads only the header synchronously; the yarns are streamed into the view in
+    // chunks so the window stays responsive while large projects are opened.
+    private void openProject(File f) {
+        closePendingProject();
+        ProjectFile.Reader reader;
+        try {
+            reader = ProjectFile.open(f);
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, Text.get("err_project_read") + "\n" + ex.getMessage());
+            return;
+        }
+
+        yarnPanels.clear();
+        yarnListContainer.removeAll();
+        history.clear();
+        pendingProject = reader;
+        RecentProjects.touch(f, reader.getYarnCount());
+        ProjectIndex.update(f, reader.getCatalogRefs());
+        try {
+            ProjectIndex.clearStale(f);
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, Text.get("err_flags_write") + "\n" + ex.getMessage());
+        }
+
+        loadProjectChunk();
+    }
+
+    private void loadProjectChunk() {
+        if (pendingProject == null) return;
+        if (appendProjectYarns(PROJECT_CHUNK)) {
+            SwingUtilities.invokeLater(this::loadProjectChunk);
+        }
+    }
+
+    // Drains the rest of a partially opened project (needed before calculating or saving).
+    private void finishProjectLoading() {
+        while (pendingProject != null && appendProjectYarns(Integer.MAX_VALUE)) { }
+    }
+
+    // Appends up to max yarns from the pending project; returns true if more are left.
+    private boolean appendProjectYarns(int max) {
+        try {
+            for (int i = 0; i < max; i++) {
+                ProjectYarn py = pendingProject.next();
+                if (py == null) {
+                    closePendingProject();
+                    break;
                 }
+                YarnPanel yp = new YarnPanel(this::removeYarn, history);
+                yp.applyProjectYarn(py);
+                yarnPanels.add(yp);
+                yarnListContainer.add(yp);
+                yp.setYarnIndex(yarnPanels.size());
+                history.loaded(yarnPanels.size() - 1);
             }
+        } catch (IOException ex) {
+            closePendingProject();
+            JOptionPane.showMessageDialog(this, Text.get("err_project_read") + "\n" + ex.getMessage());
+        }
+        yarnListContainer.revalidate();
+        yarnListContainer.repaint();
+        return pendingProject != null;
+    }
 
-            // 5. Output
-            String[] cols = {Text.get("col_fiber"), Text.get("col_share")};
-            Object[][] data = new Object[n][2];
-            
-            for (int i = 0; i < n; i++) {
-                data[i][0] = entries.get(i).getKey();
-                data[i][1] = String.format(loc, "%.1f", tenths[i] / 10.0);
-            }
-
-            JTable table = new JTable(data, cols);
-            table.setEnabled(false);
-            JScrollPane sp = new JScrollPane(table);
-            sp.setPreferredSize(new Dimension(400, 250));
-
-            Object[] options = {Text.get("btn_ok"), Text.get("btn_copy")};
-            int result = JOptionPane.showOptionDialog(
-                    this,
-                    sp,
-                    String.format(loc, Text.get("title_result"), totalWeight),
-                    JOptionPane.YES_NO_OPTION,
-                    JOptionPane.INFORMATION_MESSAGE,
-                    null,
-                    options,
-                    options[0]
-            );
-
-            if (result == 1) { // Copy
-                StringBuilder sb = new StringBuilder();
-                for (int i = 0; i < cols.length; i++) {
-                    sb.append(cols[i]);
-                    if (i < cols.length - 1) sb.append("\t");
+    private void closePendingProject() {
+        if (pendingProject == null) return;
+        try { pendingProject.close(); } catch (IOException ignored) { }
+        pendingProject = null;
+    }
+
+    // --- Bulk Import ---
+
+    private void importCatalogDialog() {
+        JFileChooser fc = new JFileChooser(new File("."));
+        fc.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(Text.get("filter_import"), "csv", "json"));
+        if (fc.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File f = fc.getSelectedFile();
+
+        Object[] options = {Text.get("opt_keep_existing"), Text.get("opt_overwrite")};
+        int choice = JOptionPane.showOptionDialog(this, Text.get("dlg_import_policy"), Text.get("btn_import"),
+                JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+        if (choice < 0) return;
+        CatalogImporter.MergePolicy policy = choice == 1 ? CatalogImporter.MergePolicy.OVERWRITE : CatalogImporter.MergePolicy.KEEP_EXISTING;
+
+        importBtn.setEnabled(false);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<CatalogImporter.Report, Void>() {
+            @Override
+            protected CatalogImporter.Report doInBackground() throws Exception {
+                return CatalogImporter.importFile(f, policy);
+            }
+
+            @Override
+            protected void done() {
+                importBtn.setEnabled(true);
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    showImportReport(get());
+                } catch (InterruptedException | java.util.concurrent.ExecutionException ex) {
+                    JOptionPane.showMessageDialog(GarnRechnerProzedural.this, Text.get("err_import") + "\n" + errorMessage(ex));
                 }
-                sb.append("\n");
-                for (Object[] row : data) {
-                    for (int i = 0; i < row.length; i++) {
-                        sb.append(row[i]);
-                        if (i < row.length - 1) sb.append("\t");
-                    }
-                    sb.append("\n");
+            }
+        }.execute();
+    }
+
+    private void showImportReport(CatalogImporter.Report r) {
+        StringBuilder sb = new StringBuilder(String.format(Text.get("msg_import_report"), r.read, r.added, r.updated, r.skipped, r.rejected));
+        if (r.rejectFile != null) {
+            sb.append("\n\n").append(String.format(Text.get("msg_import_rejects"), r.rejectFile.getName()));
+            for (String line : r.firstRejects) sb.append("\n").append(line);
+            if (r.rejected > r.firstRejects.size()) sb.append("\n…");
+        }
+        JTextArea area = new JTextArea(sb.toString());
+        area.setEditable(false);
+        JScrollPane sp = new JScrollPane(area);
+        sp.setPreferredSize(new Dimension(520, 260));
+        JOptionPane.showMessageDialog(this, sp, Text.get("btn_import"), JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    // --- What-if Sweep ---
+
+    private void showSweepDialog() {
+        finishProjectLoading();
+        List<ProjectYarn> project = captureProject();
+        if (project.isEmpty()) {
+            JOptionPane.showMessageDialog(this, Text.get("msg_add_one_yarn"));
+            return;
+        }
+        ValidationIssues issues = validateYarns(yarnPanels);
+        if (!issues.isEmpty()) {
+            showIssues(issues);
+            return;
+        }
+
+        String[] yarnNames = new String[project.size()];
+        for (int i = 0; i < yarnNames.length; i++) yarnNames[i] = String.format(Text.get("border_yarn"), i + 1);
+        String[] yarnNamesOrNone = new String[yarnNames.length + 1];
+        yarnNamesOrNone[0] = Text.get("sweep_none");
+        System.arraycopy(yarnNames, 0, yarnNamesOrNone, 1, yarnNames.length);
+
+        JComboBox<String> xYarn = new JComboBox<>(yarnNames);
+        JTextField xFrom = new JTextField("0", 6), xTo = new JTextField(Numbers.formatSimple(Math.max(1.0, project.get(0).grams * 2)), 6), xSteps = new JTextField("1001", 6);
+        JComboBox<String> yYarn = new JComboBox<>(yarnNamesOrNone);
+        JTextField yFrom = new JTextField("0", 6), yTo = new JTextField("200", 6), ySteps = new JTextField("201", 6);
+
+        JPanel form = new JPanel(new GridLayout(0, 4, 5, 5));
+        form.add(new JLabel()); form.add(new JLabel(Text.get("sweep_from"))); form.add(new JLabel(Text.get("sweep_to"))); form.add(new JLabel(Text.get("sweep_steps")));
+        form.add(xYarn); form.add(xFrom); form.add(xTo); form.add(xSteps);
+        form.add(yYarn); form.add(yFrom); form.add(yTo); form.add(ySteps);
+
+        if (JOptionPane.showConfirmDialog(this, form, Text.get("btn_sweep"), JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+
+        GramSweep.Axis x = sweepAxis(xYarn.getSelectedIndex(), xFrom, xTo, xSteps), y = null;
+        if (yYarn.getSelectedIndex() > 0) y = sweepAxis(yYarn.getSelectedIndex() - 1, yFrom, yTo, ySteps);
+        if (x == null || (yYarn.getSelectedIndex() > 0 && y == null)) {
+            JOptionPane.showMessageDialog(this, Text.get("err_sweep_input"));
+            return;
+        }
+        if (x.from < 0 || x.to < 0 || (y != null && (y.from < 0 || y.to < 0)) || (y != null && y.yarn == x.yarn)
+                || !GramSweep.fits(project, x, y)) {
+            JOptionPane.showMessageDialog(this, String.format(Text.get("err_sweep_input_range"), GramSweep.MAX_POINTS, GramSweep.MAX_CELLS));
+            return;
+        }
+
+        GramSweep.Axis xAxis = x, yAxis = y;
+        sweepBtn.setEnabled(false);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<GramSweep.Result, Void>() {
+            @Override
+            protected GramSweep.Result doInBackground() {
+                return GramSweep.run(project, xAxis, yAxis);
+            }
+
+            @Override
+            protected void done() {
+                sweepBtn.setEnabled(true);
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    showSweepResult(get(), yarnNames);
+                } catch (InterruptedException | java.util.concurrent.ExecutionException ex) {
+                    JOptionPane.showMessageDialog(GarnRechnerProzedural.this, errorMessage(ex));
                 }
-                StringSelection selection = new StringSelection(sb.toString());
-                Toolkit.getDefaultToolkit().getSystemClipboard().setContents(selection, null);
-                JOptionPane.showMessageDialog(this, Text.get("msg_copied"));
             }
+        }.execute();
+    }
 
-        } catch (NumberFormatException ex) {
-            JOptionPane.showMessageDialog(this, Text.get("err_number_format") + "\n" + ex.getMessage());
-        } catch (IllegalArgumentException ex) {
-            JOptionPane.showMessageDialog(this, ex.getMessage());
+    // null if a field is not a number or the step count is not a whole number >= 2
+    private static GramSweep.Axis sweepAxis(int yarn, JTextField from, JTextField to, JTextField steps) {
+        Locale loc = Text.current.locale;
+        double f = Numbers.parse(from.getText(), loc, Double.NaN);
+        double t = Numbers.parse(to.getText(), loc, Double.NaN);
+        double n = Numbers.parse(steps.getText(), loc, Double.NaN);
+        if (Double.isNaN(f) || Double.isNaN(t) || !(n >= 2 && n <= Integer.MAX_VALUE) || n != Math.rint(n)) return null;
+        return new GramSweep.Axis(yarn, f, t, (int) n);
+    }
+
+    private void showSweepResult(GramSweep.Result r, String[] yarnNames) {
+        JDialog dlg = new JDialog(this, Text.get("btn_sweep"), false);
+        SweepChart chart = new SweepChart(r, yarnNames);
+
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        top.add(new JLabel(String.format(Text.current.locale, Text.get("sweep_info"), r.points(), r.millis, r.boundary.cardinality())));
+        JButton export = new JButton(Text.get("btn_export"));
+        export.addActionListener(e -> exportResults(w -> GramSweep.export(r, yarnNames, w)));
+        top.add(export);
+        if (r.y != null) {
+            JComboBox<String> fiberBox = new JComboBox<>(r.fibers);
+            fiberBox.addActionListener(e -> chart.setHeatFiber(fiberBox.getSelectedIndex()));
+            top.add(Box.createHorizontalStrut(15));
+            top.add(new JLabel(Text.get("lbl_fiber")));
+            top.add(fiberBox);
         }
+
+        dlg.getContentPane().add(top, BorderLayout.NORTH);
+        dlg.getContentPane().add(chart, BorderLayout.CENTER);
+        dlg.setSize(900, 600);
+        dlg.setLocationRelativeTo(this);
+        dlg.setVisible(true);
     }
 
-    private static String normalizeName(String s) {
+    static String normalizeName(String s) {
         s = s.trim();
         if (s.isEmpty()) return s;
         return s.substring(0, 1).toUpperCase(Locale.ROOT) + s.substring(1);
     }
 
     private static void loadData() {
-        loadedYarns = DataLoader.loadYarnsFromFile("yarns.json");
-        loadedFibers = DataLoader.loadFibersFromFile("fibers.json");
-    }
-    
-    public static void saveYarnsToDisk() {
-        DataLoader.saveYarnsToFile(loadedYarns, "yarns.json");
-    }
-    
-    public static void saveFibersToDisk() {
-        DataLoader.saveFibersToFile(loadedFibers, "fibers.json");
+        Catalog.load(YARNS_FILE, FIBERS_FILE);
+        FiberTaxonomy.load(TAXONOMY_FILE);
+        LabelGenerator.loadFiberNames(FIBER_NAMES_FILE);
     }
 
-    public static Map<String, List<FiberDef>> getLoadedYarns() { return loadedYarns; }
-    public static Set<String> getLoadedFibers() { return loadedFibers; }
-
     public static void main(String[] args) {
+        // Headless run used to record the CDS archive (see build-dist.sh)
+        if (args.length > 0 && args[0].equals("--train")) {
+            TrainingRun.run();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--bench-kernel")) {
+            CompositionKernels.benchmark();
+            return;
+        }
+        // Headless bulk import: --import <file.csv|file.json> [--overwrite]
+        if (args.length > 1 && args[0].equals("--import")) {
+            runImport(args);
+            return;
+        }
+        // UI load test: --load-harness <yarns> <fibers per yarn> <catalog yarns> [rounds]
+        if (args.length > 3 && args[0].equals("--load-harness")) {
+            LoadHarness.main(args);
+            return;
+        }
+        // Care labels for saved projects: --labels <project.garn|folder>...
+        if (args.length > 1 && args[0].equals("--labels")) {
+            runLabels(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        boolean startupBench = args.length > 0 && args[0].equals("--startup-bench");
+
+        // --startup-bench times exactly this sequence
+        Text.init();
+        ensureExampleFiles();
+        loadData();
+        CatalogWatcher.start(YARNS_FILE, FIBERS_FILE);
+        ProjectIndex.rebuild();
+        if (startupBench) TrainingRun.reportStartupPhase("catalog_ms");
+        SwingUtilities.invokeLater(() -> {
+            if (startupBench && GraphicsEnvironment.isHeadless()) {
+                System.out.println("no display, main window not measured");
+                System.exit(2);
+            }
+            GarnRechnerProzedural frame = new GarnRechnerProzedural();
+            if (startupBench) TrainingRun.reportStartupOnOpen(frame);
+            frame.setVisible(true);
+        });
+    }
+
+    private static void runImport(String[] args) {
         Text.init();
         ensureExampleFiles();
         loadData();
-        SwingUtilities.invokeLater(() -> new GarnRechnerProzedural().setVisible(true));
+        boolean overwrite = args.length > 2 && args[2].equals("--overwrite");
+        try {
+            CatalogImporter.Report r = CatalogImporter.importFile(new File(args[1]),
+                    overwrite ? CatalogImporter.MergePolicy.OVERWRITE : CatalogImporter.MergePolicy.KEEP_EXISTING);
+            System.out.println(String.format(Text.get("msg_import_report"), r.read, r.added, r.updated, r.skipped, r.rejected));
+            if (r.rejectFile != null) System.out.println(String.format(Text.get("msg_import_rejects"), r.rejectFile.getPath()));
+        } catch (IOException | java.util.concurrent.CompletionException e) {
+            // The final commit fails as CompletionException (around the write's IOException)
+            System.err.println(Text.get("err_import") + " " + errorMessage(e));
+            System.exit(1);
+        }
+    }
+
+    // One line per project: file, German label, English label (tab separated)
+    private static void runLabels(String[] paths) {
+        Text.init();
+        loadData();
+        List<File> projects = new ArrayList<>();
+        for (String p : paths) {
+            File f = new File(p);
+            File[] inDir = f.isDirectory() ? f.listFiles((dir, name) -> name.endsWith("." + ProjectFile.EXTENSION)) : null;
+            if (inDir != null) {
+                Arrays.sort(inDir);
+                projects.addAll(Arrays.asList(inDir));
+            } else {
+                projects.add(f);
+            }
+        }
+        List<String> failures = new ArrayList<>();
+        for (String line : LabelGenerator.forProjects(projects, Catalog.snapshot().yarns, failures)) System.out.println(line);
+        for (String failure : failures) System.err.println(Text.get("err_labels") + " " + failure);
+        if (!failures.isEmpty()) System.exit(1);
     }
 
     private static void ensureExampleFiles() {
-        File fY = new File("yarns.json");
+        try {
+            writeExampleFiles();
+        } catch (IOException e) {
+            // The app still starts, with whatever catalog could be read
+            System.err.println(e);
+        }
+    }
+
+    private static void writeExampleFiles() throws IOException {
+        File fY = new File(YARNS_FILE);
         if (!fY.exists()) {
             Map<String, List<FiberDef>> initial = new LinkedHashMap<>();
             List<FiberDef> sock = new ArrayList<>();
             sock.add(new FiberDef("Schurwolle", 75));
             sock.add(new FiberDef("Polyamid", 25));
             initial.put("Sockenwolle Klassik", sock);
-            DataLoader.saveYarnsToFile(initial, "yarns.json");
+            DataLoader.saveYarnsToFile(initial, YARNS_FILE);
         }
         
-        File fF = new File("fibers.json");
+        File fF = new File(FIBERS_FILE);
         if (!fF.exists()) {
             Set<String> initial = new TreeSet<>(Arrays.asList("Baumwolle", "Schurwolle", "Polyacryl", "Polyamid", "Seide", "Kaschmir"));
-            DataLoader.saveFibersToFile(initial, "fibers.json");
+            DataLoader.saveFibersToFile(initial, FIBERS_FILE);
+        }
+
+        File fT = new File(TAXONOMY_FILE);
+        if (!fT.exists()) {
+            Map<String, String> initial = new LinkedHashMap<>();
+            initial.put("Schurwolle", "Wolle");
+            initial.put("Merino", "Wolle");
+            initial.put("Kaschmir", "Tierhaare");
+            initial.put("Alpaka", "Tierhaare");
+            initial.put("Mohair", "Tierhaare");
+            initial.put("Wolle", "Naturfasern");
+            initial.put("Tierhaare", "Naturfasern");
+            initial.put("Seide", "Naturfasern");
+            initial.put("Baumwolle", "Naturfasern");
+            initial.put("Leinen", "Naturfasern");
+            initial.put("Polyamid", "Chemiefasern");
+            initial.put("Polyacryl", "Chemiefasern");
+            initial.put("Polyester", "Chemiefasern");
+            initial.put("Viskose", "Chemiefasern");
+            DataLoader.saveStringMapToFile(initial, TAXONOMY_FILE);
         }
     }
 }
 
-// --- Language Infrastructure ---
+// --- Startup Training / Benchmark ---
 
-enum Lang {
-    DE(Locale.GERMANY), EN(Locale.US);
-    final Locale locale;
-    Lang(Locale l) { this.locale = l; }
+class TrainingRun {
+
+    // Exercises the startup path without a display: texts, the catalog (JSON round trip,
+    // yarn table, fiber index, writer thread and events), the Swing panel classes, the
+    // undo history, the composition math and the result export. Everything written goes
+    // to a temp directory so the user's yarns.json/fibers.json are never touched.
+    static void run() {
+        System.setProperty("java.awt.headless", "true");
+        long start = System.nanoTime();
+
+        Text.init();
+        for (Lang l : Lang.values()) {
+            Text.current = l;
+            Text.get("app_title");
+            Text.get("title_result");
+        }
+        Text.current = Lang.DE;
+
+        // Lightweight components work headless, so the panel classes get archived too.
+        // Created first, so the catalog commits below reach it through the event bus.
+        YarnPanel yp = new YarnPanel(p -> { }, ProjectEditListener.NONE);
+        yp.addFiberRow("Seide", 0);
+        yp.updateTexts();
+
+        File dir = null;
+        try {
+            dir = Files.createTempDirectory("garn-train").toFile();
+            String yarnsFile = new File(dir, "yarns.json").getPath();
+            String fibersFile = new File(dir, "fibers.json").getPath();
+
+            Map<String, List<FiberDef>> yarns = new LinkedHashMap<>();
+            yarns.put("Sockenwolle Klassik", Arrays.asList(new FiberDef("Schurwolle", 75), new FiberDef("Polyamid", 25)));
+            yarns.put("Sommergarn", Arrays.asList(new FiberDef("Baumwolle", 60), new FiberDef("Seide", 40)));
+            DataLoader.saveYarnsToFile(yarns, yarnsFile);
+            DataLoader.saveFibersToFile(new TreeSet<>(Arrays.asList("Baumwolle", "Schurwolle", "Polyamid", "Seide")), fibersFile);
+
+            Catalog.load(yarnsFile, fibersFile);
+            Catalog.putYarn("Mischgarn", Arrays.asList(new FiberDef("Schurwolle", 50), new FiberDef("Seide", 50))).join();
+            Catalog.snapshot().yarns.fiberIndex().query(FiberIndex.Query.parse("Seide>=40; -Polyacryl", Locale.ROOT));
+            SwingUtilities.invokeAndWait(() -> { });   // delivers the coalesced catalog events
+
+            trainHistory();
+
+            String[] fibers = {"Schurwolle", "Seide"};
+            for (ResultWriter.Format format : ResultWriter.Format.values()) {
+                try (ResultWriter w = ResultWriter.open(new File(dir, "export." + format), format, Locale.GERMANY)) {
+                    w.beginRecipe("Mischgarn", 100.0);
+                    for (int f = 0; f < fibers.length; f++) w.share(fibers[f], 500);
+                    w.endRecipe();
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (dir != null) DataLoader.deleteTree(dir);
+        }
+
+        double[] weights = {33.3, 33.3, 33.4, 12.5, 0.05};
+        long checksum = 0;
+        for (int i = 0; i < 10_000; i++) {
+            for (long t : Composition.roundToTenths(weights, 112.55)) checksum += t;
+        }
+
+        System.out.printf(Locale.ROOT, "training run finished in %.1f ms (checksum %d)%n",
+                (System.nanoTime() - start) / 1e6, checksum);
+    }
+
+    // Undo/redo over a plain list instead of panels
+    private static void trainHistory() throws Exception {
+        List<ProjectYarn> yarns = new ArrayList<>();
+        ProjectHistory history = new ProjectHistory(new ProjectHistory.View() {
+            @Override public int size() { return yarns.size(); }
+            @Override public int indexOf(YarnPanel yp) { return -1; }
+            @Override public ProjectYarn capture(int index) { return yarns.get(index); }
+            @Override public void apply(int index, ProjectYarn py) { yarns.set(index, py); }
+            @Override public void insert(int index, ProjectYarn py) { yarns.add(index, py); }
+            @Override public void remove(int index) { yarns.remove(index); }
+            @Override public void historyChanged() { }
+        });
+        SwingUtilities.invokeAndWait(() -> {
+            history.clear();
+            yarns.add(new ProjectYarn("Sommergarn", false, 100, Collections.emptyList()));
+            history.inserted(0);
+            history.undo();
+            history.redo();
+        });
+    }
+
+    // Prints the time from JVM start to a step of the launch, on the same line as the next one
+    static void reportStartupPhase(String name) {
+        long jvmStart = java.lang.management.ManagementFactory.getRuntimeMXBean().getStartTime();
+        System.out.print(name + "=" + (System.currentTimeMillis() - jvmStart) + " ");
+    }
+
+    // Prints the time from JVM start until the main window is open, then exits.
+    static void reportStartupOnOpen(JFrame frame) {
+        frame.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowOpened(java.awt.event.WindowEvent e) {
+                long jvmStart = java.lang.management.ManagementFactory.getRuntimeMXBean().getStartTime();
+                System.out.println("startup_ms=" + (System.currentTimeMillis() - jvmStart));
+                System.exit(0);
+            }
+        });
+    }
 }
 
-class Text {
-    static Lang current = Lang.DE;
-    private static final Map<String, String[]> dict = new HashMap<>();
-    private static final List<Runnable> listeners = new ArrayList<>();
+// --- Load Harness ---
 
-    static void init() {
-        // [German, English]
-        put("app_title", "Garnzusammensetzung berechnen", "Yarn Composition Calculator");
-        put("btn_add_yarn", "Garn hinzufügen", "Add Yarn");
-        put("btn_calc", "Berechnen", "Calculate");
-        
-        // Updated to use numbering format
-        put("border_yarn", "Garn %d", "Yarn %d");
-        
-        put("lbl_yarn", "Garn:", "Yarn:");
+// Builds a large project (N yarns with M fibers each, catalog of K yarns in a temp
+// directory) in the real main window and times its actions end to end: each action runs
+// on the EDT and is only done once the events and repaints it queued have been processed.
+// Dialogs the actions open (the result window) are closed as soon as they are shown.
+// Needs a display (xvfb-run works). Prints latency percentiles per action against a p90
+// budget and the heap growth; exits with status 1 if an action is over budget. The
+// user's catalog and project files are never touched.
+class LoadHarness {
+    private static final String[] FIBERS = {"Baumwolle", "Schurwolle", "Polyacryl", "Polyamid", "Seide", "Kaschmir", "Leinen", "Viskose"};
+
+    // p90 budgets in ms: 100 ms still feels immediate; typing must stay well below that.
+    // Switching the language is rare and may take a little longer.
+    private static final Map<String, Double> BUDGET_MS = Map.of(
+            "add yarn", 100.0, "type grams", 50.0, "save yarn", 100.0,
+            "switch language", 200.0, "calculate", 100.0, "remove yarn", 100.0);
+
+    private static final class Timings {
+        final String name;
+        long[] nanos = new long[64];
+        int n;
+        Timings(String name) { this.name = name; }
+
+        void add(long t) {
+            if (n == nanos.length) nanos = Arrays.copyOf(nanos, n * 2);
+            nanos[n++] = t;
+        }
+
+        double percentile(long[] sorted, double p) {
+            return sorted[Math.min(n - 1, (int) Math.ceil(p * n) - 1)] / 1e6;
+        }
+    }
+
+    static void main(String[] args) {
+        if (GraphicsEnvironment.isHeadless()) {
+            System.err.println("The load harness opens the main window and needs a display, e.g.: xvfb-run java GarnRechnerProzedural --load-harness ...");
+            System.exit(2);
+        }
+        int yarns = Integer.parseInt(args[1]), fibers = Integer.parseInt(args[2]), catalog = Integer.parseInt(args[3]);
+        int rounds = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+        boolean withinBudget = false;
+        try {
+            withinBudget = run(yarns, fibers, catalog, rounds);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(2);
+        }
+        System.exit(withinBudget ? 0 : 1);
+    }
+
+    // Returns false if an action is over its budget
+    static boolean run(int yarns, int fibers, int catalogSize, int rounds) throws Exception {
+        Text.init();
+        File dir = Files.createTempDirectory("garn-load").toFile();
+        File yarnsFile = new File(dir, GarnRechnerProzedural.YARNS_FILE);
+        File fibersFile = new File(dir, GarnRechnerProzedural.FIBERS_FILE);
+        // Closes the result window (and any other dialog) once it is on screen
+        Toolkit.getDefaultToolkit().addAWTEventListener(e -> {
+            if (e.getID() == java.awt.event.WindowEvent.WINDOW_OPENED && e.getSource() instanceof Dialog) ((Dialog) e.getSource()).dispose();
+        }, AWTEvent.WINDOW_EVENT_MASK);
+        try {
+            Map<String, Timings> timings = new LinkedHashMap<>();
+            Random rnd = new Random(42);
+
+            // Catalog of K yarns
+            long t0 = System.nanoTime();
+            YarnTable.Builder b = new YarnTable.Builder(YarnTable.EMPTY);
+            for (int i = 0; i < catalogSize; i++) b.put("Katalog " + i, blend(rnd, 1 + rnd.nextInt(3)));
+            DataLoader.saveYarnsToFile(b.build(), yarnsFile.getPath());
+            DataLoader.saveFibersToFile(new TreeSet<>(Arrays.asList(FIBERS)), fibersFile.getPath());
+            Catalog.load(yarnsFile.getPath(), fibersFile.getPath());
+            timed(timings, "load catalog", () -> { }, t0);
+
+            GarnRechnerProzedural frame = onEdt(() -> {
+                GarnRechnerProzedural f = new GarnRechnerProzedural();
+                f.setVisible(true);
+                return f;
+            });
+            long heapBefore = usedHeap();
+
+            // N yarns with M fibers
+            t0 = System.nanoTime();
+            onEdt(() -> {
+                while (frame.getYarnPanels().size() < yarns) addYarnWithFibers(frame, rnd, fibers);
+                return null;
+            });
+            timed(timings, "build project", () -> { }, t0);
+            long heapBuilt = usedHeap();
+
+            for (int r = 0; r < rounds; r++) {
+                int round = r;
+                timed(timings, "add yarn", () -> addYarnWithFibers(frame, rnd, fibers), System.nanoTime());
+                timed(timings, "type grams", () -> {
+                    List<YarnPanel> list = frame.getYarnPanels();
+                    list.get(rnd.nextInt(list.size())).typeGrams(String.valueOf(50 + rnd.nextInt(200)));
+                }, System.nanoTime());
+                // Until the saving panel shows the entry, which is after the commit's event
+                // reached every panel; the file is written off the EDT meanwhile
+                t0 = System.nanoTime();
+                onEdt(() -> {
+                    List<YarnPanel> list = frame.getYarnPanels();
+                    return list.get(rnd.nextInt(list.size())).saveAsCatalogYarn("Lasttest " + round);
+                }).get();
+                timed(timings, "save yarn", () -> { }, t0);
+                // What the DE/EN buttons do
+                timed(timings, "switch language", () -> {
+                    Text.setLanguage(Text.current == Lang.DE ? Lang.EN : Lang.DE);
+                }, System.nanoTime());
+                timed(timings, "calculate", frame::calculateTotals, System.nanoTime());
+                timed(timings, "remove yarn", () -> {
+                    List<YarnPanel> list = frame.getYarnPanels();
+                    list.get(list.size() - 1).removeSelf();
+                }, System.nanoTime());
+            }
+            long heapAfter = usedHeap();
+
+            System.out.printf(Locale.ROOT, "load harness: %d yarns x %d fibers, catalog %d yarns, %d rounds (main window)%n",
+                    yarns, fibers, catalogSize, rounds);
+            System.out.printf(Locale.ROOT, "%-16s %6s %9s %9s %9s %9s %9s%n", "action", "n", "p50 ms", "p90 ms", "p99 ms", "max ms", "budget");
+            List<String> over = new ArrayList<>();
+            for (Timings t : timings.values()) {
+                long[] sorted = Arrays.copyOf(t.nanos, t.n);
+                Arrays.sort(sorted);
+                double p90 = t.percentile(sorted, 0.9);
+                Double budget = BUDGET_MS.get(t.name);
+                System.out.printf(Locale.ROOT, "%-16s %6d %9.2f %9.2f %9.2f %9.2f %9s%n", t.name, t.n,
+                        t.percentile(sorted, 0.5), p90, t.percentile(sorted, 0.99), sorted[t.n - 1] / 1e6,
+                        budget == null ? "-" : String.format(Locale.ROOT, "%.0f", budget));
+                if (budget != null && p90 > budget) over.add(String.format(Locale.ROOT, "%s (p90 %.0f ms > %.0f ms)", t.name, p90, budget));
+            }
+            System.out.println(over.isEmpty() ? "all actions within budget" : "OVER BUDGET: " + String.join(", ", over));
+            System.out.printf(Locale.ROOT, "heap: %.1f MB before, %.1f MB with project (+%.1f), %.1f MB after rounds (%+.1f)%n",
+                    heapBefore / 1e6, heapBuilt / 1e6, (heapBuilt - heapBefore) / 1e6, heapAfter / 1e6, (heapAfter - heapBuilt) / 1e6);
+            return over.isEmpty();
+        } finally {
+            DataLoader.deleteTree(dir);
+        }
+    }
+
+    // Through the window's own addYarn (history, numbering), then filled like an opened project
+    private static void addYarnWithFibers(GarnRechnerProzedural frame, Random rnd, int fibers) {
+        frame.addYarn();
+        List<YarnPanel> list = frame.getYarnPanels();
+        list.get(list.size() - 1).applyProjectYarn(new ProjectYarn(null, false, 50 + rnd.nextInt(200), blend(rnd, fibers)));
+    }
+
+    // Blend of n fibers adding up to 100 % (fibers beyond the sample names get a number)
+    private static List<FiberDef> blend(Random rnd, int n) {
+        List<FiberDef> res = new ArrayList<>(n);
+        int first = rnd.nextInt(FIBERS.length);
+        int each = 1000 / n, left = 1000 - each * n;
+        for (int i = 0; i < n; i++) {
+            int k = first + i;
+            String name = FIBERS[k % FIBERS.length] + (k < FIBERS.length ? "" : " " + k / FIBERS.length);
+            res.add(new FiberDef(name, (each + (i == 0 ? left : 0)) / 10.0));
+        }
+        return res;
+    }
+
+    // Runs the action on the EDT and waits until everything it queued has been processed
+    private static void timed(Map<String, Timings> timings, String name, Runnable action, long start) throws Exception {
+        SwingUtilities.invokeAndWait(action);
+        SwingUtilities.invokeAndWait(() -> { });
+        long t = System.nanoTime() - start;
+        timings.computeIfAbsent(name, Timings::new).add(t);
+    }
+
+    private static <T> T onEdt(java.util.concurrent.Callable<T> c) throws Exception {
+        Object[] res = new Object[1];
+        Exception[] err = new Exception[1];
+        SwingUtilities.invokeAndWait(() -> {
+            try { res[0] = c.call(); } catch (Exception e) { err[0] = e; }
+        });
+        if (err[0] != null) throw err[0];
+        @SuppressWarnings("unchecked") T t = (T) res[0];
+        return t;
+    }
+
+    private static long usedHeap() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
+
+// --- Language Infrastructure ---
+
+enum Lang {
+    DE(Locale.GERMANY), EN(Locale.US);
+    final Locale locale;
+    Lang(Locale l) { this.locale = l; }
+}
+
+class Text {
+    static Lang current = Lang.DE;
+    private static final Map<String, String[]> dict = new HashMap<>();
+
+    static void init() {
+        // [German, English]
+        put("app_title", "Garnzusammensetzung berechnen", "Yarn Composition Calculator");
+        put("btn_add_yarn", "Garn hinzufügen", "Add Yarn");
+        put("btn_calc", "Berechnen", "Calculate");
+        put("btn_undo", "Rückgängig", "Undo");
+        put("btn_redo", "Wiederholen", "Redo");
+        put("tip_undo", "Letzte Änderung rückgängig machen (Strg+Z)", "Undo last change (Ctrl+Z)");
+        put("tip_redo", "Änderung wiederherstellen (Strg+Y)", "Redo change (Ctrl+Y)");
+        
+        // Updated to use numbering format
+        put("border_yarn", "Garn %d", "Yarn %d");
+        
+        put("lbl_yarn", "Garn:", "Yarn:");
         put("lbl_grams", "Gramm:", "Grams:");
         put("btn_edit", "Garn Bearbeiten", "Edit Yarn");
         put("btn_save", "Garn Speichern", "Save Yarn");
@@ -376,14 +1265,20 @@ class Text {
         put("btn_copy", "Kopieren", "Copy");
         
         put("err_grams_neg", "Gramm darf nicht negativ sein.", "Grams must not be negative.");
-        put("err_sum_mismatch", "Bei einem Garn ergeben die Prozente nicht 100% (sondern %.2f%%).", "Percentages for a yarn do not equal 100% (but %.2f%%).");
+        put("err_sum_mismatch", "Bei einem Garn ergeben die Prozente nicht 100%% (sondern %.2f%%).", "Percentages for a yarn do not equal 100%% (but %.2f%%).");
         put("err_fiber_empty", "Fasername darf nicht leer sein.", "Fiber name must not be empty.");
         put("err_percent_neg", "Prozent darf nicht negativ sein.", "Percentage must not be negative.");
-        put("err_number_format", "Bitte nur Zahlen in Prozent/Gramm-Feldern eingeben.", "Please enter only numbers in percent/gram fields.");
         put("msg_no_fibers", "Keine Fasern vorhanden.", "No fibers available.");
-        put("msg_sum_100", "Summe muss 100% sein. (Aktuell: %s%%)", "Total must be 100%. (Current: %s%%)");
+        put("msg_issues", "Bitte die markierten Felder prüfen:", "Please check the marked fields:");
+        put("msg_issues_more", "... und %d weitere", "... and %d more");
+        put("err_grams_invalid", "Gramm ist keine gültige Zahl (z. B. 1250 oder 1,25; \"1.250\" ist mehrdeutig).", "Grams is not a valid number (e.g. 1250 or 1.25; \"1,250\" is ambiguous).");
+        put("err_percent_invalid", "Prozent ist keine gültige Zahl.", "Percentage is not a valid number.");
+        put("loc_yarn", "Garn %d: %s", "Yarn %d: %s");
+        put("loc_fiber", "Garn %d, Faser %d: %s", "Yarn %d, fiber %d: %s");
+        put("msg_sum_100", "Summe muss 100%% sein. (Aktuell: %s%%)", "Total must be 100%%. (Current: %s%%)");
         put("dlg_name_input", "Bitte Namen für das Garn eingeben:", "Please enter a name for the yarn:");
         put("dlg_overwrite", "Garn '%s' existiert bereits. Überschreiben?", "Yarn '%s' already exists. Overwrite?");
+        put("dlg_overwrite_file", "Die Datei '%s' existiert bereits. Ersetzen?", "The file '%s' already exists. Replace it?");
         put("dlg_save_changes", "Änderungen an '%s' speichern (überschreiben)?", "Save changes to '%s' (overwrite)?");
         put("msg_saved", "Garn '%s' gespeichert!", "Yarn '%s' saved!");
         put("dlg_delete", "Möchten Sie '%s' wirklich löschen?", "Do you really want to delete '%s'?");
@@ -391,12 +1286,114 @@ class Text {
         put("dlg_title_warn", "Warnung", "Warning");
         put("dlg_fiber_exists", "Faser '%s' existiert bereits.", "Fiber '%s' already exists.");
         put("dlg_del_fiber", "Faserart '%s' wirklich löschen?", "Really delete fiber type '%s'?");
+        put("err_catalog_save", "Der Katalog konnte nicht gespeichert werden, die Änderung wurde verworfen.", "The catalog could not be saved; the change was discarded.");
+
+        // Projects
+        put("btn_open_project", "Projekt öffnen", "Open Project");
+        put("btn_save_project", "Projekt speichern", "Save Project");
+        put("btn_recent", "Zuletzt geöffnet", "Recent");
+        put("filter_project", "Garn-Projekte (*.garn)", "Yarn projects (*.garn)");
+        put("recent_entry", "%s (%d Garne)", "%s (%d yarns)");
+        put("msg_no_recent", "Keine zuletzt geöffneten Projekte.", "No recent projects.");
+        put("msg_project_saved", "Projekt '%s' gespeichert!", "Project '%s' saved!");
+        put("err_project_read", "Projekt konnte nicht geöffnet werden.", "Project could not be opened.");
+        put("err_catalog_lock", "Katalog konnte nicht gesperrt werden, die Änderung wurde nicht gespeichert.", "Could not lock the catalog; the change was not saved.");
+        put("err_project_write", "Projekt konnte nicht gespeichert werden.", "Project could not be saved.");
+        put("recent_entry_stale", "%s (%d Garne) – Zusammensetzung geändert", "%s (%d yarns) – composition changed");
+        put("msg_labels_changed", "Geänderte Garne ändern die Zusammensetzung dieser Projekte:", "Changed yarns alter the composition of these projects:");
+        put("err_flags_write", "Die Markierung der Projekte (project_flags.txt) konnte nicht gespeichert werden.", "The project marks (project_flags.txt) could not be saved.");
+        put("label_change", "%s: %s → %s", "%s: %s → %s");
+        put("label_missing", "(Garn fehlt)", "(yarn missing)");
+
+        // Fiber Filter
+        put("tip_filter", "Garne nach Fasern filtern, z. B. Baumwolle>=50; -Polyacryl; Seide",
+                "Filter yarns by fiber, e.g. Baumwolle>=50; -Polyacryl; Seide");
+        put("filter_hits", "%d Treffer", "%d matches");
+        put("err_filter", "Ungültige Bedingung: '%s'", "Invalid condition: '%s'");
+
+        // Fiber Taxonomy
+        put("lbl_rollup", "Zusammenfassen:", "Roll up:");
+        put("rollup_none", "Einzelne Fasern", "Individual fibers");
+        put("rollup_level", "Ebene %d", "Level %d");
+        put("lbl_other_below", "Sonstige unter", "Other below");
+        put("other_fibers", "Sonstige Fasern", "Other fibers");
+
+        // Care Labels
+        put("lbl_care_label", "Etikett", "Care label");
+        put("err_labels", "Etiketten konnten nicht erstellt werden:", "Labels could not be created:");
+
+        // Fiber names on care labels (catalog names are German)
+        put("fiber_Baumwolle", "Baumwolle", "Cotton");
+        put("fiber_Schurwolle", "Schurwolle", "New wool");
+        put("fiber_Wolle", "Wolle", "Wool");
+        put("fiber_Merino", "Merinowolle", "Merino wool");
+        put("fiber_Kaschmir", "Kaschmir", "Cashmere");
+        put("fiber_Alpaka", "Alpaka", "Alpaca");
+        put("fiber_Mohair", "Mohair", "Mohair");
+        put("fiber_Angora", "Angora", "Angora");
+        put("fiber_Kamelhaar", "Kamelhaar", "Camel hair");
+        put("fiber_Yak", "Yak", "Yak");
+        put("fiber_Seide", "Seide", "Silk");
+        put("fiber_Leinen", "Leinen", "Linen");
+        put("fiber_Hanf", "Hanf", "Hemp");
+        put("fiber_Viskose", "Viskose", "Viscose");
+        put("fiber_Modal", "Modal", "Modal");
+        put("fiber_Lyocell", "Lyocell", "Lyocell");
+        put("fiber_Polyamid", "Polyamid", "Polyamide");
+        put("fiber_Polyacryl", "Polyacryl", "Acrylic");
+        put("fiber_Polyester", "Polyester", "Polyester");
+        put("fiber_Elasthan", "Elasthan", "Elastane");
+        put("fiber_Tierhaare", "Tierhaare", "Animal hair");
+        put("fiber_Naturfasern", "Naturfasern", "Natural fibers");
+        put("fiber_Chemiefasern", "Chemiefasern", "Man-made fibers");
+
+        // Result Export
+        put("btn_export", "Exportieren...", "Export...");
+        put("filter_csv", "CSV-Datei (*.csv)", "CSV file (*.csv)");
+        put("filter_json", "JSON-Datei (*.json)", "JSON file (*.json)");
+        put("chk_localized_numbers", "Zahlen wie eingestellte Sprache", "Numbers as in selected language");
+        put("msg_exported", "%,d Zeilen nach %s exportiert.", "Exported %,d rows to %s.");
+        put("err_export", "Fehler beim Exportieren:", "Export failed:");
+        put("col_recipe", "Rezept", "Recipe");
+        put("col_total", "Gesamt (g)", "Total (g)");
+
+        // What-if Sweep
+        put("btn_sweep", "Was-wäre-wenn", "What-if");
+        put("sweep_none", "—", "—");
+        put("sweep_from", "Von (g)", "From (g)");
+        put("sweep_to", "Bis (g)", "To (g)");
+        put("sweep_steps", "Schritte", "Steps");
+        put("sweep_info", "%,d Punkte in %d ms, %,d Etikett-Wechsel", "%,d points in %d ms, %,d label changes");
+        put("sweep_axis_share", "Anteil (%)", "Share (%)");
+        put("err_sweep_input", "Bitte gültige Zahlen für Von/Bis/Schritte eingeben.", "Please enter valid numbers for from/to/steps.");
+        put("err_sweep_input_range", "Grammwerte dürfen nicht negativ sein, zwei verschiedene Garne wählen und höchstens %,d Punkte (Punkte × Fasern höchstens %,d).", "Grams must not be negative, pick two different yarns and at most %,d points (points × fibers at most %,d).");
+
+        // Bulk Import
+        put("btn_import", "Garne importieren", "Import Yarns");
+        put("filter_import", "Garnlisten (*.csv, *.json)", "Yarn lists (*.csv, *.json)");
+        put("dlg_import_policy", "Wie sollen Garne behandelt werden, die es schon gibt?", "How should yarns that already exist be handled?");
+        put("opt_keep_existing", "Bestehende behalten", "Keep existing");
+        put("opt_overwrite", "Überschreiben", "Overwrite");
+        put("msg_import_report", "Gelesen: %d\nNeu: %d\nAktualisiert: %d\nÜbersprungen: %d\nAbgelehnt: %d",
+                "Read: %d\nNew: %d\nUpdated: %d\nSkipped: %d\nRejected: %d");
+        put("msg_import_rejects", "Abgelehnte Einträge (vollständige Liste in %s):", "Rejected entries (full list in %s):");
+        put("err_import", "Import fehlgeschlagen.", "Import failed.");
+        put("err_yarn_skipped", "Garn '%s' im Katalog übersprungen: ungültiger Anteil für '%s'.", "Catalog yarn '%s' skipped: invalid percentage for '%s'.");
+        put("import_reject_line", "Eintrag %d '%s': %s", "Record %d '%s': %s");
+        put("rej_no_name", "Name fehlt.", "Name is missing.");
+        put("rej_unknown_fiber", "Unbekannte Faser '%s'.", "Unknown fiber '%s'.");
     }
 
     private static void put(String key, String de, String en) {
         dict.put(key, new String[]{de, en});
     }
 
+    // Like get(), for a given language; null if the key is unknown
+    static String find(String key, Lang lang) {
+        String[] vals = dict.get(key);
+        return vals == null ? null : vals[lang == Lang.DE ? 0 : 1];
+    }
+
     static String get(String key) {
         String[] vals = dict.get(key);
         if (vals == null) return "MISSING:" + key;
@@ -406,22 +1403,386 @@ class Text {
     static void setLanguage(Lang l) {
         if (current == l) return;
         current = l;
-        notifyListeners();
+        Events.post(Events.LANGUAGE, l);
+    }
+}
+
+// --- Events ---
+
+// Typed application events. A subscription holds its owner (usually a component) weakly,
+// so removed panels stop receiving events once they are collected; their entries are
+// dropped through a reference queue on the next subscribe or post. The handler gets the
+// owner passed in and must not capture it (method references on the owner's class or
+// lambdas that only use their parameters), otherwise the subscription keeps it alive.
+// post() works from any thread; events of the same type that arrive before delivery are
+// coalesced into one, and everything is delivered on the EDT in subscription order.
+final class Events {
+    static final class Type<E> {
+        private final String name;
+        private final java.util.function.BinaryOperator<E> coalesce;
+        private final List<Subscriber<?, E>> subscribers = new ArrayList<>();
+
+        private Type(String name, java.util.function.BinaryOperator<E> coalesce) {
+            this.name = name;
+            this.coalesce = coalesce;
+        }
+
+        @Override public String toString() { return name; }
+    }
+
+    private static final class Subscriber<O, E> extends java.lang.ref.WeakReference<O> {
+        final Type<E> type;
+        final java.util.function.BiConsumer<? super O, ? super E> handler;
+
+        Subscriber(O owner, Type<E> type, java.util.function.BiConsumer<? super O, ? super E> handler) {
+            super(owner, collected);
+            this.type = type;
+            this.handler = handler;
+        }
+
+        void deliver(E event) {
+            O o = get();
+            if (o != null) handler.accept(o, event);
+        }
+    }
+
+    static final Type<Lang> LANGUAGE = new Type<>("language", (a, b) -> b);
+    // Catalog commits merge into one covering the whole burst (first before, last after)
+    static final Type<Catalog.Commit> YARNS_CHANGED = new Type<>("yarns", Catalog.Commit::then);
+    static final Type<Catalog.Commit> FIBERS_CHANGED = new Type<>("fibers", Catalog.Commit::then);
+    static final Type<ProjectHistory> PROJECT_EDITED = new Type<>("project", (a, b) -> b);
+
+    private static final java.lang.ref.ReferenceQueue<Object> collected = new java.lang.ref.ReferenceQueue<>();
+    private static final Map<Type<?>, Object> pending = new LinkedHashMap<>();
+    private static boolean scheduled;
+
+    private Events() { }
+
+    static <O, E> void subscribe(O owner, Type<E> type, java.util.function.BiConsumer<? super O, ? super E> handler) {
+        prune();
+        synchronized (type.subscribers) {
+            type.subscribers.add(new Subscriber<>(owner, type, handler));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> void post(Type<E> type, E event) {
+        prune();
+        boolean schedule;
+        synchronized (pending) {
+            pending.merge(type, event, (a, b) -> type.coalesce.apply((E) a, (E) b));
+            schedule = !scheduled;
+            scheduled = true;
+        }
+        if (schedule) SwingUtilities.invokeLater(Events::flush);
+    }
+
+    private static void flush() {
+        List<Map.Entry<Type<?>, Object>> batch;
+        synchronized (pending) {
+            batch = new ArrayList<>(pending.entrySet());
+            pending.clear();
+            scheduled = false;
+        }
+        for (Map.Entry<Type<?>, Object> e : batch) deliver(e.getKey(), e.getValue());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> void deliver(Type<E> type, Object event) {
+        List<Subscriber<?, E>> subs;
+        synchronized (type.subscribers) {
+            subs = new ArrayList<>(type.subscribers);
+        }
+        for (Subscriber<?, E> s : subs) s.deliver((E) event);
+    }
+
+    // Drops the subscriptions whose owner has been collected
+    private static void prune() {
+        java.lang.ref.Reference<?> r;
+        while ((r = collected.poll()) != null) {
+            Subscriber<?, ?> s = (Subscriber<?, ?>) r;
+            synchronized (s.type.subscribers) {
+                s.type.subscribers.remove(s);
+            }
+        }
     }
-    
-    static void addListener(Runnable r) { listeners.add(r); }
-    private static void notifyListeners() { listeners.forEach(Runnable::run); }
 }
 
 class FiberDef {
-    String name;
-    double percentage;
+    final String name;
+    final double percentage;
     FiberDef(String n, double p) { this.name = n; this.percentage = p; }
 }
 
+// --- Composition Math ---
+
+// Parent links between fiber names (Merino -> Wolle -> Naturfasern), read from
+// fiber_taxonomy.json. Every fiber keeps its path from the root, so its ancestor at
+// any level is a single array lookup. Fibers without an entry are roots.
+final class FiberTaxonomy {
+    static final FiberTaxonomy EMPTY = new FiberTaxonomy(Collections.emptyMap());
+    private static volatile FiberTaxonomy current = EMPTY;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private int[][] paths;   // paths[id] = ids from the root down to id
+    private int maxDepth;
+
+    FiberTaxonomy(Map<String, String> parents) {
+        Map<String, String> norm = new HashMap<>();
+        for (Map.Entry<String, String> e : parents.entrySet()) {
+            String child = GarnRechnerProzedural.normalizeName(e.getKey());
+            String parent = GarnRechnerProzedural.normalizeName(e.getValue());
+            idOf(child);
+            idOf(parent);
+            if (!child.equals(parent)) norm.put(child, parent);
+        }
+        paths = new int[names.size()][];
+        for (int id = 0; id < names.size(); id++) path(id, norm, new HashSet<>());
+    }
+
+    private int idOf(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    // A link that would close a cycle is ignored (the fiber becomes a root)
+    private int[] path(int id, Map<String, String> parents, Set<Integer> visiting) {
+        if (paths[id] != null) return paths[id];
+        String parent = parents.get(names.get(id));
+        int[] p;
+        if (parent == null || !visiting.add(id) || visiting.contains(ids.get(parent))) {
+            p = new int[] { id };
+        } else {
+            int[] up = path(ids.get(parent), parents, visiting);
+            p = Arrays.copyOf(up, up.length + 1);
+            p[up.length] = id;
+        }
+        visiting.remove(id);
+        maxDepth = Math.max(maxDepth, p.length - 1);
+        return paths[id] = p;
+    }
+
+    static FiberTaxonomy current() { return current; }
+
+    static void load(String file) {
+        current = new FiberTaxonomy(DataLoader.loadStringMapFromFile(file));
+    }
+
+    boolean isEmpty() { return maxDepth == 0; }
+
+    // Level 0 are the roots; levels() - 1 is the deepest level
+    int levels() { return maxDepth + 1; }
+
+    // Name the fiber is reported as at the given level (itself if it is not deeper)
+    String rollUp(String fiber, int level) {
+        Integer id = ids.get(fiber);
+        if (id == null) return fiber;
+        int[] p = paths[id];
+        return level >= p.length ? fiber : names.get(p[level]);
+    }
+}
+
+class Composition {
+
+    // Largest Remainder Method (Hare-Niemeyer) on tenths of a percent.
+    // The result always sums to exactly 1000 (= 100.0%).
+    static long[] roundToTenths(double[] weights, double totalWeight) {
+        return roundToUnits(weights, weights.length, totalWeight, 1000);
+    }
+
+    // Same for any resolution: units = 100 gives whole percents, 1000 tenths.
+    // Only the first n weights are used.
+    static long[] roundToUnits(double[] weights, int n, double totalWeight, int units) {
+        long[] out = new long[n];
+        roundToUnits(weights, 0, n, totalWeight, units, out, new double[n]);
+        return out;
+    }
+
+    // The shared routine: weights[off..off+n) as shares of totalWeight, rounded to whole units
+    // summing to 'units', into out[0..n). rem is scratch space of at least n. The difference goes to the entries
+    // with the largest (or smallest) remainder; ties go to the larger weight, then the lower
+    // index, so weights sorted in descending order keep their input order.
+    static void roundToUnits(double[] weights, int off, int n, double totalWeight, int units, long[] out, double[] rem) {
+        long sum = 0;
+        double sumWeights = 0.0;
+        for (int i = 0; i < n; i++) {
+            double exact = (weights[off + i] / totalWeight) * units;
+            out[i] = Math.round(exact);
+            rem[i] = exact - out[i];
+            sum += out[i];
+            sumWeights += weights[off + i];
+        }
+        if (sumWeights <= 0.0) return; // empty recipe, nothing to distribute
+
+        long diff = units - sum;
+        for (long k = 0; k < Math.abs(diff) && k < n; k++) {
+            int best = -1;
+            for (int i = 0; i < n; i++) {
+                if (Double.isNaN(rem[i])) continue;   // already adjusted
+                if (best < 0) { best = i; continue; }
+                int c = Double.compare(rem[i], rem[best]);
+                if (diff < 0) c = -c;
+                if (c > 0 || (c == 0 && weights[off + i] > weights[off + best])) best = i;
+            }
+            rem[best] = Double.NaN;
+            out[best] += diff > 0 ? 1 : -1;
+        }
+    }
+
+    // Adds the fiber weights of one project yarn (catalog references resolved against the
+    // given catalog). False if it refers to a catalog entry that does not exist.
+    static boolean addYarnWeights(ProjectYarn py, Map<String, List<FiberDef>> catalog, Map<String, Double> weights) {
+        List<FiberDef> fibers = py.isCatalogRef() ? catalog.get(py.catalogName) : py.fibers;
+        if (fibers == null) return false;
+        for (FiberDef fd : fibers) weights.merge(GarnRechnerProzedural.normalizeName(fd.name), py.grams * fd.percentage / 100.0, Double::sum);
+        return true;
+    }
+
+    // Groups fiber weights by their ancestor at the given taxonomy level (-1: no roll-up)
+    // and merges groups below otherPercent of the total into one "other fibers" group.
+    // Returns the groups sorted by weight (descending), "other fibers" last; rounding
+    // is left to the caller so it happens after the roll-up.
+    static List<Map.Entry<String, Double>> rollUp(Map<String, Double> fiberWeight, double totalWeight,
+                                                   FiberTaxonomy taxonomy, int level, double otherPercent, String otherName) {
+        Map<String, Double> groups = new LinkedHashMap<>();
+        for (Map.Entry<String, Double> e : fiberWeight.entrySet()) {
+            String key = level < 0 ? e.getKey() : taxonomy.rollUp(e.getKey(), level);
+            groups.merge(key, e.getValue(), Double::sum);
+        }
+
+        List<Map.Entry<String, Double>> res = new ArrayList<>(groups.size());
+        double other = 0.0;
+        int otherCount = 0;
+        for (Map.Entry<String, Double> e : groups.entrySet()) {
+            if (otherPercent > 0 && totalWeight > 0 && e.getValue() / totalWeight * 100.0 < otherPercent) {
+                other += e.getValue();
+                otherCount++;
+            } else {
+                res.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue()));
+            }
+        }
+        res.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+        if (otherCount > 0) res.add(new AbstractMap.SimpleImmutableEntry<>(otherName, other));
+        return res;
+    }
+
+    // Allocation-free variant for batch use. shares[off..off+n) are percentages of one
+    // recipe (summing to 100); the rounded units (1000: tenths, 100: whole percents) go to
+    // out[outOff..outOff+n). scratch and rem need room for n entries.
+    static void roundShares(double[] shares, int off, int n, int units, short[] out, int outOff, long[] scratch, double[] rem) {
+        roundToUnits(shares, off, n, 100.0, units, scratch, rem);
+        for (int i = 0; i < n; i++) out[outOff + i] = (short) scratch[i];
+    }
+}
+
+// --- Validation ---
+
+// Every issue found by a validation run, with its yarn/fiber location. Stored in
+// parallel arrays that are reused after clear(), so batch validation does not
+// allocate per record.
+final class ValidationIssues {
+    enum Kind { GRAMS_INVALID, GRAMS_NEGATIVE, NO_FIBERS, FIBER_NAME_EMPTY, FIBER_UNKNOWN, PERCENT_INVALID, PERCENT_NEGATIVE, SUM_MISMATCH }
+
+    private Kind[] kinds = new Kind[8];
+    private int[] yarns = new int[8], fibers = new int[8];   // fiber is -1 for yarn-level issues
+    private double[] values = new double[8];
+    private String[] names = new String[8];                  // fiber name, if any
+    private int size;
+
+    void clear() {
+        Arrays.fill(names, 0, size, null);
+        size = 0;
+    }
+
+    boolean isEmpty() { return size == 0; }
+    int size() { return size; }
+    Kind kind(int i) { return kinds[i]; }
+    int yarn(int i) { return yarns[i]; }
+    int fiber(int i) { return fibers[i]; }
+    double value(int i) { return values[i]; }
+
+    void add(Kind kind, int yarn, int fiber, double value, String name) {
+        if (size == kinds.length) {
+            int cap = size * 2;
+            kinds = Arrays.copyOf(kinds, cap);
+            yarns = Arrays.copyOf(yarns, cap);
+            fibers = Arrays.copyOf(fibers, cap);
+            values = Arrays.copyOf(values, cap);
+            names = Arrays.copyOf(names, cap);
+        }
+        kinds[size] = kind; yarns[size] = yarn; fibers[size] = fiber; values[size] = value; names[size] = name;
+        size++;
+    }
+
+    // Message without location
+    String detail(int i) {
+        Locale loc = Text.current.locale;
+        switch (kinds[i]) {
+            case GRAMS_INVALID: return Text.get("err_grams_invalid");
+            case GRAMS_NEGATIVE: return Text.get("err_grams_neg");
+            case NO_FIBERS: return Text.get("msg_no_fibers");
+            case FIBER_NAME_EMPTY: return Text.get("err_fiber_empty");
+            case FIBER_UNKNOWN: return String.format(Text.get("rej_unknown_fiber"), names[i]);
+            case PERCENT_INVALID: return Text.get("err_percent_invalid");
+            case PERCENT_NEGATIVE: return Text.get("err_percent_neg");
+            default: return String.format(loc, Text.get("err_sum_mismatch"), values[i]);
+        }
+    }
+
+    // Message with location ("Yarn 2, fiber 1: ...")
+    String message(int i) {
+        return fibers[i] < 0
+                ? String.format(Text.get("loc_yarn"), yarns[i] + 1, detail(i))
+                : String.format(Text.get("loc_fiber"), yarns[i] + 1, fibers[i] + 1, detail(i));
+    }
+}
+
+final class Validator {
+    static final double SUM_TOLERANCE = 0.09;
+
+    // Checks one yarn (grams NaN = not a number, percentages likewise) and adds every
+    // issue to out. knownFibers restricts the fiber names (null = any). Returns true
+    // if the yarn is valid.
+    static boolean checkYarn(int yarn, double grams, List<FiberDef> fibers, Set<String> knownFibers, ValidationIssues out) {
+        int before = out.size();
+        if (Double.isNaN(grams)) out.add(ValidationIssues.Kind.GRAMS_INVALID, yarn, -1, grams, null);
+        else if (grams < 0) out.add(ValidationIssues.Kind.GRAMS_NEGATIVE, yarn, -1, grams, null);
+
+        if (fibers.isEmpty()) {
+            out.add(ValidationIssues.Kind.NO_FIBERS, yarn, -1, 0.0, null);
+            return false;
+        }
+        double sum = 0.0;
+        boolean sumKnown = true;
+        for (int f = 0; f < fibers.size(); f++) {
+            FiberDef fd = fibers.get(f);
+            String name = fd.name.trim();
+            if (name.isEmpty()) out.add(ValidationIssues.Kind.FIBER_NAME_EMPTY, yarn, f, 0.0, null);
+            else if (knownFibers != null && !knownFibers.contains(name)) out.add(ValidationIssues.Kind.FIBER_UNKNOWN, yarn, f, 0.0, name);
+
+            double p = fd.percentage;
+            if (Double.isNaN(p)) { out.add(ValidationIssues.Kind.PERCENT_INVALID, yarn, f, p, name); sumKnown = false; }
+            else if (p < 0) out.add(ValidationIssues.Kind.PERCENT_NEGATIVE, yarn, f, p, name);
+            else sum += p;
+        }
+        // With an unreadable percentage the sum says nothing new
+        if (sumKnown && Math.abs(sum - 100.0) > SUM_TOLERANCE) out.add(ValidationIssues.Kind.SUM_MISMATCH, yarn, -1, sum, null);
+        return out.size() == before;
+    }
+}
+
 class YarnPanel extends JPanel {
 
-    private final JComboBox<String> yarnSelector = new JComboBox<>();
+    private final YarnComboModel yarnModel = new YarnComboModel();
+    private final JComboBox<String> yarnSelector = new JComboBox<>(yarnModel);
+    private final JTextField filterField = new JTextField(12);
+    private final JLabel filterHits = new JLabel();
     private final JButton editBtn = new JButton();
     private final JButton saveBtn = new JButton();
     private final JButton deleteBtn = new JButton();
@@ -440,12 +1801,16 @@ class YarnPanel extends JPanel {
     private final JButton removeYarn = new JButton();
 
     private final java.util.function.Consumer<YarnPanel> onRemove;
+    private final ProjectEditListener edits;
     private boolean isInternalChange = false;
     private boolean isEditingSavedYarn = false;
     private int yarnIndex = 1;
+    private FiberIndex.Query filter;   // null: all catalog yarns are listed
+    private static final int MAX_FILTER_ITEMS = 1000;
 
-    YarnPanel(java.util.function.Consumer<YarnPanel> onRemove) {
+    YarnPanel(java.util.function.Consumer<YarnPanel> onRemove, ProjectEditListener edits) {
         this.onRemove = onRemove;
+        this.edits = edits;
 
         // Border will be set in updateTexts
         setLayout(new BorderLayout(5, 5));
@@ -464,8 +1829,12 @@ class YarnPanel extends JPanel {
         
         UIHelper.addSelectAllOnFocus(gramsField, false);
 
+        UIHelper.attachDocListener(filterField, this::onFilterChanged);
+
         headerLine.add(lblYarn);
         headerLine.add(yarnSelector);
+        headerLine.add(filterField);
+        headerLine.add(filterHits);
         headerLine.add(editBtn);
         headerLine.add(saveBtn);
         headerLine.add(deleteBtn);
@@ -499,24 +1868,31 @@ class YarnPanel extends JPanel {
 
         addFiberRow(Text.get("new_fiber_def"), 100);
         updateSumUI();
-        UIHelper.attachDocListener(gramsField, this::updateSumUI);
+        UIHelper.attachDocListener(gramsField, this::onTyped);
+        UIHelper.attachDocListener(gramsField, () -> UIHelper.clearInvalid(gramsField));
         
         updateButtonState();
         checkLockState();
         updateTexts();
+        Events.subscribe(this, Events.LANGUAGE, (yp, lang) -> yp.updateTexts());
     }
     
-    // Called externally to set numbering
+    // Called externally to set numbering; only the border title depends on it
     void setYarnIndex(int i) {
+        if (i == yarnIndex && getBorder() != null) return;
         this.yarnIndex = i;
-        updateTexts();
+        updateBorder();
     }
-    
-    void updateTexts() {
+
+    private void updateBorder() {
         // Create thicker border with sequential title
         Border line = BorderFactory.createLineBorder(Color.GRAY, 2);
         TitledBorder title = BorderFactory.createTitledBorder(line, String.format(Text.get("border_yarn"), yarnIndex));
         setBorder(title);
+    }
+    
+    void updateTexts() {
+        updateBorder();
 
         lblYarn.setText(Text.get("lbl_yarn"));
         lblGrams.setText(Text.get("lbl_grams"));
@@ -526,20 +1902,15 @@ class YarnPanel extends JPanel {
         addFiber.setText(Text.get("btn_add_fiber"));
         fillRest.setText(Text.get("btn_fill_rest"));
         removeYarn.setText(Text.get("btn_remove_yarn"));
+        filterField.setToolTipText(Text.get("tip_filter"));
+        if (filter != null) onFilterChanged();
         
-        if (yarnSelector.getItemCount() > 0) {
-            isInternalChange = true;
-            String current = (String) yarnSelector.getSelectedItem();
-            yarnSelector.removeItemAt(0);
-            yarnSelector.insertItemAt(Text.get("custom_yarn"), 0);
-            
-            boolean wasCustom = current == null || current.equals("Benutzerdefiniert") || current.equals("Custom") || current.equals("Neu") || current.equals("New");
-            if (wasCustom) yarnSelector.setSelectedIndex(0);
-            else yarnSelector.setSelectedItem(current);
-            isInternalChange = false;
-        }
+        // Only the "New" entry depends on the language
+        isInternalChange = true;
+        yarnModel.updateCustomText();
+        updatePrototype();
+        isInternalChange = false;
 
-        for(FiberRow r : fiberRows) r.updateTexts();
         updateSumUI();
         repaint();
     }
@@ -552,41 +1923,88 @@ class YarnPanel extends JPanel {
     }
 
     public void reloadYarnDropdown() {
+        boolean found = fillYarnSelector(Catalog.snapshot().yarns);
+        String newSelection = (String) yarnSelector.getSelectedItem();
+        if (found && !Text.get("custom_yarn").equals(newSelection)) {
+             List<FiberDef> defs = Catalog.snapshot().yarns.get(newSelection);
+             if (defs != null) {
+                 loadFibersFromDef(defs);
+                 setFibersLocked(true);
+             }
+        }
+    }
+
+    // Points the dropdown at the given catalog (all yarns, or the matches of the filter)
+    // and keeps the selection. Returns false if the selected yarn is not in the catalog.
+    private boolean fillYarnSelector(YarnTable yarns) {
         isInternalChange = true;
         Object currentItem = yarnSelector.getSelectedItem();
-        String currentName = (currentItem != null) ? currentItem.toString() : Text.get("custom_yarn");
+        boolean custom = YarnComboModel.isCustom(currentItem);
+        String currentName = custom ? null : currentItem.toString();
 
-        yarnSelector.removeAllItems();
-        yarnSelector.addItem(Text.get("custom_yarn"));
-        
-        for (String k : GarnRechnerProzedural.getLoadedYarns().keySet()) {
-            yarnSelector.addItem(k);
-        }
-        
-        boolean found = false;
-        if (currentName.equals("Benutzerdefiniert") || currentName.equals("Custom") || currentName.equals("Neu") || currentName.equals("New")) {
-            yarnSelector.setSelectedIndex(0);
-            found = true;
+        boolean found = custom || yarns.containsKey(currentName);
+        if (filter == null) {
+            yarnModel.showAll(yarns);
+            filterHits.setText("");
         } else {
-            for(int i=0; i<yarnSelector.getItemCount(); i++) {
-                if (Objects.equals(yarnSelector.getItemAt(i), currentName)) {
-                    yarnSelector.setSelectedIndex(i);
-                    found = true;
-                    break;
-                }
+            BitSet rows = yarns.fiberIndex().query(filter);
+            filterHits.setText(String.format(Text.get("filter_hits"), rows.cardinality()));
+            List<String> items = new ArrayList<>();
+            // The selected yarn stays available even if it does not match
+            if (found && !custom) items.add(currentName);
+            for (int r = rows.nextSetBit(0); r >= 0 && items.size() < MAX_FILTER_ITEMS; r = rows.nextSetBit(r + 1)) {
+                String name = yarns.name(r);
+                if (!name.equals(currentName)) items.add(name);
             }
+            yarnModel.showOnly(yarns, items);
         }
-        if (!found) yarnSelector.setSelectedIndex(0);
-
+        yarnModel.setSelectedItem(found && !custom ? currentName : yarnModel.getElementAt(0));
+        updatePrototype();
         isInternalChange = false;
-        
-        String newSelection = (String) yarnSelector.getSelectedItem();
-        if (found && !Text.get("custom_yarn").equals(newSelection)) {
-             List<FiberDef> defs = GarnRechnerProzedural.getLoadedYarns().get(newSelection);
-             if (defs != null) {
-                 loadFibersFromDef(defs);
-                 setFibersLocked(true);
-             }
+        return found;
+    }
+
+    // Sizing the dropdown from a prototype keeps Swing from measuring every catalog name.
+    // Its popup list gets fixed cells from the same prototype; otherwise each change of the
+    // entries (a language switch, a catalog commit) measures all names again.
+    private void updatePrototype() {
+        String widest = yarnModel.widestEntry();
+        if (widest == yarnSelector.getPrototypeDisplayValue()) return;
+        yarnSelector.setPrototypeDisplayValue(widest);
+        Object popup = yarnSelector.getUI().getAccessibleChild(yarnSelector, 0);
+        if (popup instanceof javax.swing.plaf.basic.ComboPopup) {
+            ((javax.swing.plaf.basic.ComboPopup) popup).getList().setPrototypeCellValue(widest);
+        }
+    }
+
+    private void onFilterChanged() {
+        String text = filterField.getText().trim();
+        try {
+            filter = text.isEmpty() ? null : FiberIndex.Query.parse(text, Text.current.locale);
+            UIHelper.clearInvalid(filterField);
+        } catch (IllegalArgumentException ex) {
+            UIHelper.markInvalid(filterField, ex.getMessage());
+            return;
+        }
+        fillYarnSelector(Catalog.snapshot().yarns);
+    }
+
+    void applyYarnDiff(CatalogDiff diff, CatalogSnapshot snapshot) {
+        String selected = (String) yarnSelector.getSelectedItem();
+
+        // Unfiltered, the model just reads the new table; a filter is evaluated again,
+        // since added or changed yarns may now match (or no longer match). Applying the
+        // same diff twice (after an own save and with the event) changes nothing.
+        fillYarnSelector(snapshot.yarns);
+
+        if (diff.removed.contains(selected)) {
+            // Selected yarn is gone: keep its fibers as a custom blend
+            isEditingSavedYarn = false;
+            updateButtonState();
+            setFibersLocked(false);
+        } else if (diff.updated.contains(selected) && !isEditingSavedYarn) {
+            loadFibersFromDef(snapshot.yarns.get(selected));
+            setFibersLocked(true);
         }
     }
 
@@ -599,13 +2017,14 @@ class YarnPanel extends JPanel {
         if (Text.get("custom_yarn").equals(selected)) {
             setFibersLocked(false);
         } else {
-            List<FiberDef> defs = GarnRechnerProzedural.getLoadedYarns().get(selected);
+            List<FiberDef> defs = Catalog.snapshot().yarns.get(selected);
             if (defs != null) {
                 loadFibersFromDef(defs);
                 setFibersLocked(true);
             }
         }
         updateButtonState();
+        edits.changed(this);
     }
     
     private void updateButtonState() {
@@ -635,19 +2054,18 @@ class YarnPanel extends JPanel {
     private void onEditClicked() {
         isEditingSavedYarn = true;
         updateButtonState();
+        edits.changed(this);
     }
     
     private void onSaveClicked() {
-        List<FiberRow> rows;
-        try { rows = getFiberRows(); } 
-        catch (IllegalArgumentException e) {
+        if (fiberRows.isEmpty()) {
             JOptionPane.showMessageDialog(this, Text.get("msg_no_fibers"));
             return;
         }
         
         double sum = getPercentSumSafe();
         if (Math.abs(sum - 100.0) > 0.09) {
-            JOptionPane.showMessageDialog(this, String.format(Text.current.locale, Text.get("msg_sum_100"), String.format(Text.current.locale, "%.1f", sum)));
+            JOptionPane.showMessageDialog(this, String.format(Text.get("msg_sum_100"), Numbers.format(sum, 1)));
             return;
         }
 
@@ -659,7 +2077,7 @@ class YarnPanel extends JPanel {
             String input = JOptionPane.showInputDialog(this, Text.get("dlg_name_input"));
             if (input == null || input.trim().isEmpty()) return;
             saveName = input.trim();
-            if (GarnRechnerProzedural.getLoadedYarns().containsKey(saveName)) {
+            if (Catalog.snapshot().yarns.containsKey(saveName)) {
                 int conf = JOptionPane.showConfirmDialog(this, 
                     String.format(Text.get("dlg_overwrite"), saveName), 
                     Text.get("dlg_title_warn"), JOptionPane.YES_NO_OPTION);
@@ -674,25 +2092,52 @@ class YarnPanel extends JPanel {
             saveName = currentSelection;
             overwrite = true;
         }
-        
+
+        boolean announce = !overwrite;
+        saveAsCatalogYarn(saveName).thenRun(() -> SwingUtilities.invokeLater(() -> {
+            if (announce) JOptionPane.showMessageDialog(this, String.format(Text.get("msg_saved"), saveName));
+        }));
+    }
+    
+    // Stores the fibers as catalog yarn 'name' and selects it (onSaveClicked after its dialogs).
+    // The file is written on the catalog writer thread; completes once this panel shows the entry.
+    // If saving fails, the error is shown and the panel stays as it was (fails the same way).
+    java.util.concurrent.CompletableFuture<Void> saveAsCatalogYarn(String name) {
         List<FiberDef> newDef = new ArrayList<>();
-        for (FiberRow r : rows) {
+        for (FiberRow r : fiberRows) {
             newDef.add(new FiberDef(r.getFiberName().trim(), r.getPercentSafe()));
         }
-        
-        GarnRechnerProzedural.getLoadedYarns().put(saveName, newDef);
-        GarnRechnerProzedural.saveYarnsToDisk();
-        
+
+        boolean wasEditing = isEditingSavedYarn;
         isEditingSavedYarn = false;
-        GarnRechnerProzedural.getInstance().refreshYarnDropdowns();
-        yarnSelector.setSelectedItem(saveName);
-        updateButtonState(); 
-        
-        if(!overwrite) {
-             JOptionPane.showMessageDialog(this, String.format(Text.get("msg_saved"), saveName));
-        }
+        return Catalog.putYarn(name, newDef).whenCompleteAsync((c, e) -> {
+            if (e != null) {
+                isEditingSavedYarn = wasEditing;
+                catalogChangeFailed(e);
+                return;
+            }
+            // This panel selects the entry as soon as it exists; the others follow with the coalesced event.
+            // Selected first, so a filtered dropdown keeps listing it.
+            isInternalChange = true;
+            yarnModel.setSelectedItem(name);
+            isInternalChange = false;
+            applyYarnDiff(c.yarnDiff(), c.after);
+            updateButtonState();
+            edits.changed(this);
+        }, SwingUtilities::invokeLater).thenAccept(c -> { });
     }
-    
+
+    // After a failed catalog save: the dropdown shows the last good snapshot again; the
+    // fibers on screen stay, so the change can be saved again
+    private void catalogChangeFailed(Throwable e) {
+        UIHelper.showCatalogError(this, e);
+        fillYarnSelector(Catalog.snapshot().yarns);
+        updateButtonState();
+    }
+
+    // Same as typing into the grams field
+    void typeGrams(String text) { gramsField.setText(text); }
+
     private void onDeleteClicked() {
         String selected = (String) yarnSelector.getSelectedItem();
         if (selected == null || Text.get("custom_yarn").equals(selected)) return;
@@ -702,9 +2147,9 @@ class YarnPanel extends JPanel {
                 Text.get("dlg_title_del"), JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
         
         if (confirm == JOptionPane.YES_OPTION) {
-            GarnRechnerProzedural.getLoadedYarns().remove(selected);
-            GarnRechnerProzedural.saveYarnsToDisk();
-            GarnRechnerProzedural.getInstance().refreshYarnDropdowns();
+            Catalog.removeYarn(selected).whenCompleteAsync((c, e) -> {
+                if (e != null) catalogChangeFailed(e);
+            }, SwingUtilities::invokeLater);
         }
     }
 
@@ -712,7 +2157,7 @@ class YarnPanel extends JPanel {
         fiberRows.clear();
         fiberList.removeAll();
         for (FiberDef fd : defs) {
-            FiberRow row = new FiberRow(fd.name, fd.percentage, this::removeFiberRow, this::updateSumUI);
+            FiberRow row = new FiberRow(fd.name, fd.percentage, this::removeFiberRow, this::onTyped);
             fiberRows.add(row);
             fiberList.add(row);
         }
@@ -738,12 +2183,38 @@ class YarnPanel extends JPanel {
 
     boolean isDisplayableOrAttached() { return getParent() != null; }
 
-    private void removeSelf() {
+    ProjectYarn toProjectYarn() {
+        String selected = (String) yarnSelector.getSelectedItem();
+        String catalogName = Text.get("custom_yarn").equals(selected) ? null : selected;
+        List<FiberDef> fibers = new ArrayList<>(fiberRows.size());
+        for (FiberRow r : fiberRows) fibers.add(new FiberDef(r.getFiberName(), r.getPercentSafe()));
+        return new ProjectYarn(catalogName, isEditingSavedYarn, getGrams(), fibers);
+    }
+
+    void applyProjectYarn(ProjectYarn py) {
+        List<FiberDef> catalogDefs = py.catalogName == null ? null : Catalog.snapshot().yarns.get(py.catalogName);
+
+        isInternalChange = true;
+        yarnModel.setSelectedItem(catalogDefs != null ? py.catalogName : yarnModel.getElementAt(0));
+        isInternalChange = false;
+        // A filtered dropdown has to list the selected yarn
+        if (filter != null && catalogDefs != null) fillYarnSelector(Catalog.snapshot().yarns);
+
+        isEditingSavedYarn = catalogDefs != null && py.edited;
+        List<FiberDef> fibers = (catalogDefs != null && !py.edited) ? catalogDefs : py.fibers;
+        if (!fibers.isEmpty()) loadFibersFromDef(fibers);
+        gramsField.setText(Numbers.formatSimple(py.grams));
+        updateButtonState();
+        if (catalogDefs == null) setFibersLocked(false);
+    }
+
+    // Same as the "Remove Yarn" button
+    void removeSelf() {
         onRemove.accept(this);
     }
 
     void addFiberRow(String name, double percent) {
-        FiberRow row = new FiberRow(name, percent, this::removeFiberRow, this::updateSumUI);
+        FiberRow row = new FiberRow(name, percent, this::removeFiberRow, this::onTyped);
         boolean isLocked = !isEditingSavedYarn && !Text.get("custom_yarn").equals(yarnSelector.getSelectedItem());
         row.setRowEnabled(!isLocked);
         fiberRows.add(row);
@@ -752,6 +2223,7 @@ class YarnPanel extends JPanel {
         fiberList.repaint();
         if(getParent()!=null) getParent().revalidate();
         updateSumUI();
+        edits.changed(this);
     }
 
     private void removeFiberRow(FiberRow row) {
@@ -761,6 +2233,7 @@ class YarnPanel extends JPanel {
         fiberList.repaint();
         if(getParent()!=null) getParent().revalidate();
         updateSumUI();
+        edits.changed(this);
     }
 
     private void fillRestTo100() {
@@ -771,21 +2244,49 @@ class YarnPanel extends JPanel {
         FiberRow last = fiberRows.get(fiberRows.size() - 1);
         last.setPercent(last.getPercentSafe() + rest);
         updateSumUI();
+        edits.changed(this);
     }
 
-    double getGrams() { return UIHelper.parseDouble(gramsField.getText()); }
-
-    List<FiberRow> getFiberRows() {
-        if (fiberRows.isEmpty()) throw new IllegalArgumentException(Text.get("msg_no_fibers"));
-        return fiberRows;
+    // Keystrokes in grams/fiber fields; the history coalesces them into one step
+    private void onTyped() {
+        updateSumUI();
+        edits.typed(this);
     }
-    
+
+    // Empty counts as 0 g; getGrams also maps invalid input to 0, getGramsOrNaN does not
+    double getGrams() { double g = getGramsOrNaN(); return Double.isNaN(g) ? 0.0 : g; }
+    double getGramsOrNaN() { return Numbers.parse(gramsField.getText(), Text.current.locale, 0.0); }
+
     List<FiberRow> getRawFiberRows() { return fiberRows; }
 
-    double getPercentSum() {
-        double sum = 0.0;
-        for (FiberRow r : getFiberRows()) sum += r.getPercent();
-        return sum;
+    // Fibers as typed; invalid percentages are NaN (for validation)
+    List<FiberDef> getRawFibers() {
+        List<FiberDef> res = new ArrayList<>(fiberRows.size());
+        for (FiberRow r : fiberRows) res.add(new FiberDef(r.getFiberName(), r.getPercent()));
+        return res;
+    }
+
+    // Marks the fields of this yarn that have issues; clears marks of fixed fields
+    void showIssues(ValidationIssues issues, int yarnIndex) {
+        UIHelper.clearInvalid(gramsField);
+        UIHelper.clearInvalid(sumLabel);
+        for (FiberRow r : fiberRows) r.clearIssues();
+        for (int i = 0; i < issues.size(); i++) {
+            if (issues.yarn(i) != yarnIndex) continue;
+            String msg = issues.message(i);
+            switch (issues.kind(i)) {
+                case GRAMS_INVALID:
+                case GRAMS_NEGATIVE:
+                    UIHelper.markInvalid(gramsField, msg);
+                    break;
+                case NO_FIBERS:
+                case SUM_MISMATCH:
+                    UIHelper.markInvalid(sumLabel, msg);
+                    break;
+                default:
+                    if (issues.fiber(i) >= 0 && issues.fiber(i) < fiberRows.size()) fiberRows.get(issues.fiber(i)).markIssue(issues.kind(i), msg);
+            }
+        }
     }
 
     private double getPercentSumSafe() {
@@ -796,7 +2297,7 @@ class YarnPanel extends JPanel {
 
     private void updateSumUI() {
         double sum = getPercentSumSafe();
-        sumLabel.setText(Text.get("sum_prefix") + String.format(Text.current.locale, "%.1f %%", sum));
+        sumLabel.setText(Text.get("sum_prefix") + Numbers.format(sum, 1) + " %");
         boolean ok = Math.abs(sum - 100.0) < 0.09;
         if (ok) {
             sumHint.setText(Text.get("sum_ok"));
@@ -811,6 +2312,71 @@ class YarnPanel extends JPanel {
     }
 }
 
+// Entries of one yarn dropdown: "New", then either every yarn of a catalog table (read
+// from the table on demand, so no panel copies the names) or a short list of filter
+// matches. Only the selection belongs to the panel. Selecting through the model instead
+// of JComboBox.setSelectedItem avoids a scan over all entries.
+final class YarnComboModel extends AbstractListModel<String> implements ComboBoxModel<String> {
+    private static final long serialVersionUID = 1L;
+
+    private YarnTable table = YarnTable.EMPTY;
+    private List<String> subset;   // null: all yarns of the table
+    private String customText = Text.get("custom_yarn");
+    private Object selected = customText;
+
+    // "New" in either language (and the former "Custom")
+    static boolean isCustom(Object item) {
+        return item == null || item.equals(Text.get("custom_yarn")) || item.equals("Benutzerdefiniert")
+                || item.equals("Custom") || item.equals("Neu") || item.equals("New");
+    }
+
+    void showAll(YarnTable t) {
+        int before = getSize();
+        table = t;
+        subset = null;
+        fireContentsChanged(this, 0, Math.max(before, getSize()) - 1);
+    }
+
+    void showOnly(YarnTable t, List<String> names) {
+        int before = getSize();
+        table = t;
+        subset = names;
+        fireContentsChanged(this, 0, Math.max(before, getSize()) - 1);
+    }
+
+    // After a language change; a selected "New" follows
+    void updateCustomText() {
+        String text = Text.get("custom_yarn");
+        if (text.equals(customText)) return;
+        boolean wasSelected = isCustom(selected);
+        customText = text;
+        if (wasSelected) selected = text;
+        fireContentsChanged(this, 0, 0);
+        if (wasSelected) fireContentsChanged(this, -1, -1);
+    }
+
+    // Longest entry, as size prototype for the dropdown
+    String widestEntry() {
+        String w = table.widestName();
+        return w.length() > customText.length() ? w : customText;
+    }
+
+    @Override public int getSize() { return 1 + (subset != null ? subset.size() : table.size()); }
+
+    @Override public String getElementAt(int i) {
+        if (i == 0) return customText;
+        return subset != null ? subset.get(i - 1) : table.name(table.row(i - 1));
+    }
+
+    @Override public Object getSelectedItem() { return selected; }
+
+    @Override public void setSelectedItem(Object item) {
+        if (Objects.equals(selected, item)) return;
+        selected = item;
+        fireContentsChanged(this, -1, -1);
+    }
+}
+
 class FiberRow extends JPanel {
     private final JComboBox<String> fiberSelector = new JComboBox<>();
     private final JTextField percent = new JTextField(4);
@@ -839,9 +2405,10 @@ class FiberRow extends JPanel {
              tf.setDisabledTextColor(Color.DARK_GRAY);
              UIHelper.addSelectAllOnFocus(tf, true);
              UIHelper.attachDocListener(tf, onAnyChange);
+             UIHelper.attachDocListener(tf, () -> UIHelper.clearInvalid(tf));
         }
 
-        percent.setText(formatSimple(p));
+        percent.setText(Numbers.formatSimple(p));
         percent.setDisabledTextColor(Color.DARK_GRAY);
         UIHelper.addSelectAllOnFocus(percent, false);
 
@@ -865,7 +2432,11 @@ class FiberRow extends JPanel {
         add(removeRowBtn);
 
         UIHelper.attachDocListener(percent, onAnyChange);
+        UIHelper.attachDocListener(percent, () -> UIHelper.clearInvalid(percent));
+        fiberSelector.addActionListener(e -> onAnyChange.run());
         updateTexts();
+        Events.subscribe(this, Events.LANGUAGE, (row, lang) -> row.updateTexts());
+        Events.subscribe(this, Events.FIBERS_CHANGED, (row, c) -> row.applyFiberDiff(c.fiberDiff()));
     }
     
     void updateTexts() {
@@ -887,39 +2458,59 @@ class FiberRow extends JPanel {
     public void reloadFiberDropdown() {
         Object current = fiberSelector.getSelectedItem();
         fiberSelector.removeAllItems();
-        for (String f : GarnRechnerProzedural.getLoadedFibers()) {
+        for (String f : Catalog.snapshot().fibers) {
             fiberSelector.addItem(f);
         }
         if (current != null) fiberSelector.setSelectedItem(current);
     }
     
+    void applyFiberDiff(CatalogDiff diff) {
+        Object current = fiberSelector.getSelectedItem();
+        for (String name : diff.removed) fiberSelector.removeItem(name);
+        for (String name : diff.added) {
+            // Keep the sorted order of the fiber set
+            int i = 0;
+            while (i < fiberSelector.getItemCount() && fiberSelector.getItemAt(i).compareTo(name) < 0) i++;
+            if (i < fiberSelector.getItemCount() && fiberSelector.getItemAt(i).equals(name)) continue;
+            fiberSelector.insertItemAt(name, i);
+        }
+        if (current != null) fiberSelector.setSelectedItem(current);
+    }
+
     private void onSaveFiber() {
         String name = getFiberName();
         if (name.isEmpty()) return;
         
-        if (GarnRechnerProzedural.getLoadedFibers().contains(name)) {
+        if (Catalog.snapshot().fibers.contains(name)) {
             JOptionPane.showMessageDialog(this, String.format(Text.get("dlg_fiber_exists"), name));
             return;
         }
         
-        GarnRechnerProzedural.getLoadedFibers().add(name);
-        GarnRechnerProzedural.saveFibersToDisk();
-        GarnRechnerProzedural.getInstance().refreshFiberDropdowns();
+        Catalog.addFiber(name).whenCompleteAsync((c, e) -> {
+            if (e != null) catalogChangeFailed(e);
+        }, SwingUtilities::invokeLater);
+        // Editable dropdown: the name can be selected before the event adds the entry
         fiberSelector.setSelectedItem(name);
     }
     
     private void onDelFiber() {
         String name = getFiberName();
-        if (!GarnRechnerProzedural.getLoadedFibers().contains(name)) return;
+        if (!Catalog.snapshot().fibers.contains(name)) return;
         
         int r = JOptionPane.showConfirmDialog(this, String.format(Text.get("dlg_del_fiber"), name), 
                                               Text.get("dlg_title_del"), JOptionPane.YES_NO_OPTION);
         if (r == JOptionPane.YES_OPTION) {
-            GarnRechnerProzedural.getLoadedFibers().remove(name);
-            GarnRechnerProzedural.saveFibersToDisk();
-            GarnRechnerProzedural.getInstance().refreshFiberDropdowns();
+            Catalog.removeFiber(name).whenCompleteAsync((c, e) -> {
+                if (e != null) catalogChangeFailed(e);
+            }, SwingUtilities::invokeLater);
         }
     }
+
+    // After a failed catalog save the dropdown lists the last good snapshot's fibers again
+    private void catalogChangeFailed(Throwable e) {
+        UIHelper.showCatalogError(this, e);
+        reloadFiberDropdown();
+    }
     
     void setRowEnabled(boolean enabled) {
         fiberSelector.setEnabled(enabled);
@@ -934,13 +2525,188 @@ class FiberRow extends JPanel {
         return (item == null) ? "" : item.toString().trim();
     }
     
-    double getPercent() { return UIHelper.parseDouble(percent.getText()); }
-    double getPercentSafe() { try { return getPercent(); } catch (Exception ignored) { return 0.0; } }
-    void setPercent(double value) { percent.setText(formatSimple(value)); }
+    double getPercent() { return Numbers.parseDecimal(percent.getText(), 0.0); }
+    double getPercentSafe() { double p = getPercent(); return Double.isNaN(p) ? 0.0 : p; }
+
+    void markIssue(ValidationIssues.Kind kind, String msg) {
+        boolean nameIssue = kind == ValidationIssues.Kind.FIBER_NAME_EMPTY || kind == ValidationIssues.Kind.FIBER_UNKNOWN;
+        Component editor = fiberSelector.getEditor().getEditorComponent();
+        UIHelper.markInvalid(nameIssue && editor instanceof JComponent ? (JComponent) editor : percent, msg);
+    }
+
+    void clearIssues() {
+        Component editor = fiberSelector.getEditor().getEditorComponent();
+        if (editor instanceof JComponent) UIHelper.clearInvalid((JComponent) editor);
+        UIHelper.clearInvalid(percent);
+    }
+    void setPercent(double value) { percent.setText(Numbers.formatSimple(value)); }
+}
+
+// Parsing and formatting of decimal numbers without intermediate strings.
+// Separators per locale are looked up once and cached.
+final class Numbers {
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_MANTISSA = 100_000_000_000_000_000L;   // more digits are dropped
+    private static final java.util.concurrent.ConcurrentHashMap<Locale, char[]> SYMBOLS = new java.util.concurrent.ConcurrentHashMap<>();
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(24));
+
+    private Numbers() { }
+
+    static char decimalSeparator(Locale l) { return symbols(l)[0]; }
+    static char groupingSeparator(Locale l) { return symbols(l)[1]; }
+
+    private static char[] symbols(Locale l) {
+        return SYMBOLS.computeIfAbsent(l, k -> {
+            java.text.DecimalFormatSymbols d = java.text.DecimalFormatSymbols.getInstance(k);
+            return new char[] { d.getDecimalSeparator(), d.getGroupingSeparator() };
+        });
+    }
+
+    // User input in the given locale: "1.234,5" (DE), "1,234.5" (EN). A single '.' or ','
+    // is the decimal separator. If it is the locale's grouping separator followed by exactly
+    // three digits ("1.250" in German) it could be either, so that is rejected as NaN
+    // instead of guessing. Returns ifEmpty for blank input and NaN for anything that is not
+    // a number.
+    static double parse(CharSequence s, Locale locale, double ifEmpty) {
+        return parse(s, groupingSeparator(locale), ifEmpty);
+    }
+
+    // '.' or ',' as decimal separator, no grouping (percentages, files, imports)
+    static double parseDecimal(CharSequence s, double ifEmpty) {
+        return parse(s, (char) 0, ifEmpty);
+    }
+
+    private static double parse(CharSequence s, char localeGrouping, double ifEmpty) {
+        int from = 0, to = s == null ? 0 : s.length();
+        while (from < to && Character.isWhitespace(s.charAt(from))) from++;
+        while (to > from && Character.isWhitespace(s.charAt(to - 1))) to--;
+        if (from == to) return ifEmpty;
+
+        int dots = 0, commas = 0, lastDot = -1, lastComma = -1;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '.') { dots++; lastDot = i; }
+            else if (c == ',') { commas++; lastComma = i; }
+        }
+        char decimal = 0, grouping = 0;
+        if (dots > 0 && commas > 0) {
+            if (localeGrouping == 0) return Double.NaN;
+            decimal = lastDot > lastComma ? '.' : ',';
+            grouping = decimal == '.' ? ',' : '.';
+        } else if (dots + commas > 1) {
+            if (localeGrouping == 0) return Double.NaN;
+            grouping = dots > 0 ? '.' : ',';
+        } else if (dots + commas == 1) {
+            char c = dots > 0 ? '.' : ',';
+            int at = dots > 0 ? lastDot : lastComma;
+            int lead = s.charAt(from) == '-' || s.charAt(from) == '+' ? from + 1 : from;
+            if (c == localeGrouping && to - at - 1 == 3 && at > lead && s.charAt(lead) != '0') return Double.NaN;
+            decimal = c;
+        }
+        return scan(s, from, to, decimal, grouping);
+    }
+
+    private static double scan(CharSequence s, int i, int to, char decimal, char grouping) {
+        boolean neg = false;
+        char first = s.charAt(i);
+        if (first == '-' || first == '+') { neg = first == '-'; i++; }
+
+        long mantissa = 0;
+        int exp10 = 0, intDigits = 0, group = -1;   // group: digits since the last grouping separator
+        boolean fraction = false, any = false;
+        for (; i < to; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                any = true;
+                if (mantissa < MAX_MANTISSA) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (fraction) exp10--;
+                } else if (!fraction) {
+                    exp10++;
+                }
+                if (!fraction) {
+                    intDigits++;
+                    if (group >= 0) group++;
+                }
+            } else if (c == grouping && !fraction) {
+                if (intDigits == 0 || (group < 0 ? intDigits > 3 : group != 3)) return Double.NaN;
+                group = 0;
+            } else if (c == decimal && !fraction) {
+                if (group >= 0 && group != 3) return Double.NaN;
+                fraction = true;
+            } else if ((c == 'e' || c == 'E') && any) {
+                int e = exponent(s, i + 1, to);
+                if (e == Integer.MIN_VALUE) return Double.NaN;
+                exp10 += e;
+                i = to;
+                break;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (!any || (!fraction && group >= 0 && group != 3)) return Double.NaN;
+
+        double v;
+        if (mantissa < (1L << 53) && exp10 >= -22 && exp10 <= 22) {
+            // Both operands are exact, so one multiplication/division rounds correctly
+            v = exp10 >= 0 ? mantissa * POW10[exp10] : mantissa / POW10[-exp10];
+        } else {
+            v = Double.parseDouble(mantissa + "E" + exp10);
+        }
+        return neg ? -v : v;
+    }
+
+    private static int exponent(CharSequence s, int i, int to) {
+        boolean neg = false;
+        if (i < to && (s.charAt(i) == '-' || s.charAt(i) == '+')) { neg = s.charAt(i) == '-'; i++; }
+        if (i >= to) return Integer.MIN_VALUE;
+        int e = 0;
+        for (; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return Integer.MIN_VALUE;
+            if (e < 10_000) e = e * 10 + (c - '0');
+        }
+        return neg ? -e : e;
+    }
+
+    // Fixed number of decimals, no grouping
+    static StringBuilder appendFixed(StringBuilder sb, double d, int decimals, char decimalSep) {
+        if (Double.isNaN(d) || Double.isInfinite(d) || Math.abs(d) >= 1e15 || decimals > 6) {
+            return sb.append(String.format(Locale.ROOT, "%." + decimals + "f", d).replace('.', decimalSep));
+        }
+        long scale = (long) POW10[decimals];
+        long v = Math.round(Math.abs(d) * scale);
+        if (d < 0 && v != 0) sb.append('-');
+        sb.append(v / scale);
+        if (decimals == 0) return sb;
+        sb.append(decimalSep);
+        long frac = v % scale;
+        for (long p = scale / 10; p > 1 && frac < p; p /= 10) sb.append('0');
+        return sb.append(frac);
+    }
+
+    // In the current language
+    static String format(double d, int decimals) {
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        return appendFixed(sb, d, decimals, decimalSeparator(Text.current.locale)).toString();
+    }
 
-    private static String formatSimple(double d) {
-        if (Math.abs(d - Math.rint(d)) < 0.0000001) return String.valueOf((int) Math.rint(d));
-        return String.format(Text.current.locale, "%.1f", d);
+    // Whole numbers without decimals, otherwise one decimal (input fields)
+    static String formatSimple(double d) {
+        if (Math.abs(d - Math.rint(d)) < 0.0000001 && Math.abs(d) < 1e15) return Long.toString((long) Math.rint(d));
+        return format(d, 1);
+    }
+
+    // Shares are computed in tenths of a percent
+    static String formatTenths(long tenths) {
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        if (tenths < 0) { sb.append('-'); tenths = -tenths; }
+        return sb.append(tenths / 10).append(decimalSeparator(Text.current.locale)).append(tenths % 10).toString();
     }
 }
 
@@ -971,18 +2737,41 @@ class UIHelper {
         });
     }
 
-    static double parseDouble(String s) {
-        try { 
-            String clean = s.trim().replace(',', '.');
-            return Double.parseDouble(clean); 
+    // A catalog change could not be saved (call on the EDT); the catalog keeps its last saved state
+    static void showCatalogError(Component parent, Throwable e) {
+        JOptionPane.showMessageDialog(parent, Text.get("err_catalog_save") + "\n" + GarnRechnerProzedural.errorMessage(e),
+                Text.get("dlg_title_warn"), JOptionPane.ERROR_MESSAGE);
+    }
+
+    private static final Color INVALID_BG = new Color(255, 220, 220);
+
+    // Highlights a field and shows the issue as tooltip; the original look is kept
+    // as client property so clearInvalid can restore it.
+    static void markInvalid(JComponent c, String msg) {
+        if (c.getClientProperty("invalid.bg") == null) {
+            c.putClientProperty("invalid.bg", c.getBackground());
+            c.putClientProperty("invalid.opaque", c.isOpaque());
+            c.putClientProperty("invalid.tip", c.getToolTipText() == null ? "" : c.getToolTipText());
         }
-        catch (Exception e) { return 0.0; }
+        c.setOpaque(true);
+        c.setBackground(INVALID_BG);
+        c.setToolTipText(msg);
+    }
+
+    static void clearInvalid(JComponent c) {
+        Object bg = c.getClientProperty("invalid.bg");
+        if (bg == null) return;
+        c.setBackground((Color) bg);
+        c.setOpaque((Boolean) c.getClientProperty("invalid.opaque"));
+        String tip = (String) c.getClientProperty("invalid.tip");
+        c.setToolTipText(tip.isEmpty() ? null : tip);
+        c.putClientProperty("invalid.bg", null);
     }
 }
 
 class DataLoader {
     
-    public static void saveYarnsToFile(Map<String, List<FiberDef>> data, String filename) {
+    public static void saveYarnsToFile(Map<String, List<FiberDef>> data, String filename) throws IOException {
         StringBuilder sb = new StringBuilder("{\n");
         int count = 0;
         for (Map.Entry<String, List<FiberDef>> entry : data.entrySet()) {
@@ -991,7 +2780,8 @@ class DataLoader {
             for (int i = 0; i < fibers.size(); i++) {
                 FiberDef f = fibers.get(i);
                 sb.append("    \"f").append(i).append("\": { \"name\": \"").append(f.name)
-                  .append("\", \"percentage\": ").append(String.format(Locale.ROOT, "%.2f", f.percentage)).append(" }");
+                  .append("\", \"percentage\": ");
+                Numbers.appendFixed(sb, f.percentage, 2, '.').append(" }");
                 if (i < fibers.size() - 1) sb.append(",");
                 sb.append("\n");
             }
@@ -1003,7 +2793,30 @@ class DataLoader {
         write(filename, sb.toString());
     }
     
-    public static void saveFibersToFile(Set<String> fibers, String filename) {
+    // Same output, read straight from the columns
+    static void saveYarnsToFile(YarnTable table, String filename) throws IOException {
+        StringBuilder sb = new StringBuilder("{\n");
+        int written = 0;
+        for (int row = 0; row < table.rowCount(); row++) {
+            if (!table.isLive(row)) continue;
+            sb.append("  \"").append(table.name(row)).append("\": {\n");
+            int start = table.fiberStart(row), end = table.fiberEnd(row);
+            for (int k = start; k < end; k++) {
+                sb.append("    \"f").append(k - start).append("\": { \"name\": \"").append(FiberPool.name(table.fiberId(k)))
+                  .append("\", \"percentage\": ");
+                Numbers.appendFixed(sb, table.percentHundredths(k) / 100.0, 2, '.').append(" }");
+                if (k < end - 1) sb.append(",");
+                sb.append("\n");
+            }
+            sb.append("  }");
+            if (++written < table.size()) sb.append(",");
+            sb.append("\n");
+        }
+        sb.append("}");
+        write(filename, sb.toString());
+    }
+
+    public static void saveFibersToFile(Set<String> fibers, String filename) throws IOException {
         StringBuilder sb = new StringBuilder("[\n");
         int c = 0;
         for (String f : fibers) {
@@ -1015,44 +2828,181 @@ class DataLoader {
         write(filename, sb.toString());
     }
     
-    private static void write(String f, String c) {
-        try { Files.write(new File(f).toPath(), c.getBytes(StandardCharsets.UTF_8)); } 
-        catch (IOException e) { e.printStackTrace(); }
+    // Checksum of the file content the in-memory catalog is based on, per file
+    private static final Map<String, Long> knownChecksums = new java.util.concurrent.ConcurrentHashMap<>();
+    private static final String LOCK_FILE = "catalog.lock";
+    private static final long LOCK_TIMEOUT_MS = 10_000;
+
+    // Written to a temp file and moved into place, so watchers never see half-written files.
+    // On failure the target keeps its previous content and nothing is marked as known.
+    private static void write(String f, String c) throws IOException {
+        byte[] bytes = c.getBytes(StandardCharsets.UTF_8);
+        java.nio.file.Path target = new File(f).toPath();
+        java.nio.file.Path tmp = new File(f + ".tmp").toPath();
+        try {
+            Files.write(tmp, bytes);
+            try {
+                Files.move(tmp, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+            } catch (java.nio.file.AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            try { Files.deleteIfExists(tmp); } catch (IOException ignored) { }
+            throw e;
+        }
+        markKnown(f, checksum(bytes));
     }
-    
-    public static Map<String, List<FiberDef>> loadYarnsFromFile(String filename) {
-        Map<String, List<FiberDef>> res = new LinkedHashMap<>();
-        String json = read(filename);
-        if (json.isEmpty()) return res;
+
+    static long knownChecksum(String f) { return knownChecksums.getOrDefault(f, -1L); }
+    static void markKnown(String f, long checksum) { knownChecksums.put(f, checksum); }
+
+    static boolean hasChangedOnDisk(String f) {
+        return checksum(readBytes(f)) != knownChecksum(f);
+    }
+
+    static long checksum(byte[] bytes) {
+        if (bytes == null) return -1L;
+        java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    // Removes a directory with everything in it, including a catalog.lock left by withCatalogLock
+    static void deleteTree(File dir) {
+        if (!dir.exists()) return;
+        try (java.util.stream.Stream<java.nio.file.Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Serializes catalog writes across all instances sharing the directory of catalogFile.
+    // Another instance's write is waited for with growing pauses; if the lock cannot be
+    // had within LOCK_TIMEOUT_MS (held too long, or the file system refuses it), r is not
+    // run and the IOException says so: a write without the lock could undo another's.
+    static void withCatalogLock(String catalogFile, Runnable r) throws IOException {
+        File lock = new File(new File(catalogFile).getAbsoluteFile().getParentFile(), LOCK_FILE);
+        long deadline = System.nanoTime() + LOCK_TIMEOUT_MS * 1_000_000L;
+        long pause = 10;
+        IOException failure = null;
+        while (true) {
+            try (java.nio.channels.FileChannel ch = java.nio.channels.FileChannel.open(lock.toPath(),
+                    java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.WRITE)) {
+                // Closing the channel releases the lock
+                if (ch.tryLock() != null) {
+                    r.run();
+                    return;
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            if (System.nanoTime() > deadline) {
+                IOException e = new IOException(Text.get("err_catalog_lock") + " (" + lock.getPath() + ")");
+                if (failure != null) e.addSuppressed(failure);
+                throw e;
+            }
+            try {
+                Thread.sleep(pause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new java.io.InterruptedIOException(Text.get("err_catalog_lock"));
+            }
+            pause = Math.min(pause * 2, 500);
+        }
+    }
+
+    public static YarnTable loadYarnsFromFile(String filename) {
+        return parseYarns(read(filename));
+    }
+
+    static YarnTable parseYarns(String json) {
+        YarnTable.Builder res = new YarnTable.Builder(null);
+        if (json.isEmpty()) return res.build();
         
         json = json.trim();
         if (json.startsWith("{") && json.endsWith("}")) json = json.substring(1, json.length()-1);
         
         List<String> blocks = splitByTopLevel(json);
         for (String b : blocks) {
-            int idx = b.indexOf(':');
-            if(idx < 0) continue;
-            String key = clean(b.substring(0, idx));
-            String val = b.substring(idx+1).trim();
-            if(val.startsWith("{")) val = val.substring(1, val.length()-1);
-            
-            List<FiberDef> list = new ArrayList<>();
-            for(String fb : splitByTopLevel(val)) {
-                int i2 = fb.indexOf(':');
-                if(i2 < 0) continue;
-                String props = fb.substring(i2+1).trim();
-                String n = extract(props, "name");
-                String p = extract(props, "percentage");
-                if(n!=null && p!=null) list.add(new FiberDef(n, Double.parseDouble(p)));
-            }
-            if(!list.isEmpty()) res.put(key, list);
+            Map.Entry<String, List<FiberDef>> e = parseYarnEntry(b);
+            if(e == null || e.getValue().isEmpty()) continue;
+            // A yarn with an unreadable percentage is left out rather than loaded with a wrong share
+            FiberDef bad = firstInvalid(e.getValue());
+            if (bad != null) {
+                System.err.println(String.format(Text.get("err_yarn_skipped"), e.getKey(), bad.name));
+                continue;
+            }
+            res.put(e.getKey(), e.getValue());
         }
-        return res;
+        return res.build();
+    }
+
+    private static FiberDef firstInvalid(List<FiberDef> fibers) {
+        for (FiberDef fd : fibers) if (!Double.isFinite(fd.percentage)) return fd;
+        return null;
+    }
+
+    // Parses one top-level block ("name": { "f0": {...}, ... }); null if it has no key.
+    // A malformed percentage is NaN; callers reject the entry (parseYarns) or report it (import).
+    static Map.Entry<String, List<FiberDef>> parseYarnEntry(String b) {
+        int idx = b.indexOf(':');
+        if(idx < 0) return null;
+        String key = clean(b.substring(0, idx));
+        String val = b.substring(idx+1).trim();
+        if(val.startsWith("{")) val = val.substring(1, val.length()-1);
+
+        List<FiberDef> list = new ArrayList<>();
+        for(String fb : splitByTopLevel(val)) {
+            int i2 = fb.indexOf(':');
+            if(i2 < 0) continue;
+            String props = fb.substring(i2+1).trim();
+            String n = extract(props, NAME_PATTERN);
+            String p = extract(props, PERCENTAGE_PATTERN);
+            if(n!=null && p!=null) list.add(new FiberDef(n, Numbers.parseDecimal(p, Double.NaN)));
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(key, list);
     }
     
+    // Flat string maps (fiber_taxonomy.json, fiber_names.json): { "key": "value", ... }
+    public static void saveStringMapToFile(Map<String, String> map, String filename) throws IOException {
+        StringBuilder sb = new StringBuilder("{\n");
+        int count = 0;
+        for (Map.Entry<String, String> e : map.entrySet()) {
+            sb.append("  \"").append(e.getKey()).append("\": \"").append(e.getValue()).append("\"");
+            if (count++ < map.size() - 1) sb.append(",");
+            sb.append("\n");
+        }
+        sb.append("}");
+        write(filename, sb.toString());
+    }
+
+    public static Map<String, String> loadStringMapFromFile(String filename) {
+        byte[] bytes = readBytes(filename);
+        return bytes == null ? Collections.emptyMap() : parseStringMap(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    static Map<String, String> parseStringMap(String json) {
+        Map<String, String> res = new LinkedHashMap<>();
+        json = json.trim();
+        if (json.startsWith("{") && json.endsWith("}")) json = json.substring(1, json.length()-1);
+        for (String entry : splitByTopLevel(json)) {
+            int idx = entry.indexOf(':');
+            if (idx < 0) continue;
+            String child = clean(entry.substring(0, idx));
+            String parent = clean(entry.substring(idx + 1));
+            if (!child.isEmpty() && !parent.isEmpty()) res.put(child, parent);
+        }
+        return res;
+    }
+
     public static Set<String> loadFibersFromFile(String filename) {
+        return parseFibers(read(filename));
+    }
+
+    static Set<String> parseFibers(String json) {
         Set<String> res = new TreeSet<>();
-        String json = read(filename).trim();
+        json = json.trim();
         if (json.startsWith("[") && json.endsWith("]")) {
             json = json.substring(1, json.length()-1);
             String[] parts = json.split(",");
@@ -1064,15 +3014,29 @@ class DataLoader {
         return res;
     }
     
+    // Reading a file makes it the known base version for later change detection
     private static String read(String f) {
+        byte[] bytes = readBytes(f);
+        markKnown(f, checksum(bytes));
+        return bytes == null ? "" : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Null if the file does not exist or cannot be read
+    static byte[] readBytes(String f) {
         File file = new File(f);
-        if(!file.exists()) return "";
-        try { return Files.readString(file.toPath(), StandardCharsets.UTF_8); } 
-        catch (Exception e) { return ""; }
+        if(!file.exists()) return null;
+        try { return Files.readAllBytes(file.toPath()); }
+        catch (Exception e) { return null; }
     }
     
-    private static String extract(String s, String key) {
-        Pattern p = Pattern.compile("\"" + key + "\"\\s*:\\s*\"?([^\"},]+)\"?");
+    private static final Pattern NAME_PATTERN = propertyPattern("name");
+    private static final Pattern PERCENTAGE_PATTERN = propertyPattern("percentage");
+
+    private static Pattern propertyPattern(String key) {
+        return Pattern.compile("\"" + key + "\"\\s*:\\s*\"?([^\"},]+)\"?");
+    }
+
+    private static String extract(String s, Pattern p) {
         Matcher m = p.matcher(s);
         return m.find() ? m.group(1).trim() : null;
     }
@@ -1093,4 +3057,2890 @@ class DataLoader {
         if(b.length()>0) r.add(b.toString().trim());
         return r;
     }
-}
\ No newline at end of file
+}
+// --- Projects ---
+
+class ProjectYarn {
+    final String catalogName;   // null for a custom blend
+    final boolean edited;       // catalog yarn in edit mode: fibers differ from the catalog entry
+    final double grams;
+    final List<FiberDef> fibers;
+
+    // List.copyOf returns a list that is already immutable as is, so shared lists stay shared
+    ProjectYarn(String catalogName, boolean edited, double grams, List<FiberDef> fibers) {
+        this.catalogName = catalogName;
+        this.edited = edited;
+        this.grams = grams;
+        this.fibers = List.copyOf(fibers);
+    }
+
+    boolean sameAs(ProjectYarn o) {
+        return Objects.equals(catalogName, o.catalogName) && edited == o.edited
+                && Double.compare(grams, o.grams) == 0 && CatalogDiff.sameFibers(fibers, o.fibers);
+    }
+
+    // Same values, but reuses prev's fiber list when the fibers did not change
+    ProjectYarn sharingFibersWith(ProjectYarn prev) {
+        if (prev == null || fibers == prev.fibers || !CatalogDiff.sameFibers(fibers, prev.fibers)) return this;
+        return new ProjectYarn(catalogName, edited, grams, prev.fibers);
+    }
+
+    // Unedited catalog yarns are stored as a reference only
+    boolean isCatalogRef() { return catalogName != null && !edited; }
+}
+
+class ProjectFile {
+    static final String EXTENSION = "garn";
+    private static final String MAGIC = "GRP1";
+
+    // Format (UTF-8, tab separated, one line per yarn):
+    //   GRP1 <yarnCount> <referenced catalog yarn>...
+    //   <grams> <catalog name or empty> <edited 0/1> <fiber>=<percent>|<fiber>=<percent>...
+    // Fibers are omitted for plain catalog references.
+    static void write(File f, List<ProjectYarn> yarns) throws IOException {
+        Set<String> refs = new LinkedHashSet<>();
+        for (ProjectYarn py : yarns) if (py.catalogName != null) refs.add(py.catalogName);
+
+        try (java.io.BufferedWriter w = Files.newBufferedWriter(f.toPath(), StandardCharsets.UTF_8)) {
+            w.write(MAGIC);
+            w.write('\t');
+            w.write(String.valueOf(yarns.size()));
+            for (String r : refs) {
+                w.write('\t');
+                w.write(escape(r));
+            }
+            w.write('\n');
+
+            for (ProjectYarn py : yarns) {
+                w.write(number(py.grams));
+                w.write('\t');
+                if (py.catalogName != null) w.write(escape(py.catalogName));
+                w.write('\t');
+                w.write(py.edited ? '1' : '0');
+                w.write('\t');
+                if (!py.isCatalogRef()) {
+                    for (int i = 0; i < py.fibers.size(); i++) {
+                        FiberDef fd = py.fibers.get(i);
+                        if (i > 0) w.write('|');
+                        w.write(escape(fd.name));
+                        w.write('=');
+                        w.write(number(fd.percentage));
+                    }
+                }
+                w.write('\n');
+            }
+        }
+    }
+
+    static Reader open(File f) throws IOException {
+        java.io.BufferedReader in = Files.newBufferedReader(f.toPath(), StandardCharsets.UTF_8);
+        try {
+            String header = in.readLine();
+            List<String> parts = header == null ? Collections.emptyList() : split(header, '\t');
+            if (parts.size() < 2 || !parts.get(0).equals(MAGIC)) throw new IOException("Not a project file: " + f.getName());
+            int count = Integer.parseInt(parts.get(1));
+            List<String> refs = new ArrayList<>();
+            for (String r : parts.subList(2, parts.size())) refs.add(unescape(r));
+            return new Reader(in, count, refs);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+        }
+    }
+
+    // Streams the yarns of a project; metadata is available right after opening.
+    static class Reader implements java.io.Closeable {
+        private final java.io.BufferedReader in;
+        private final int yarnCount;
+        private final List<String> catalogRefs;
+        private int lineNo = 1;
+
+        private Reader(java.io.BufferedReader in, int yarnCount, List<String> catalogRefs) {
+            this.in = in;
+            this.yarnCount = yarnCount;
+            this.catalogRefs = Collections.unmodifiableList(catalogRefs);
+        }
+
+        int getYarnCount() { return yarnCount; }
+        List<String> getCatalogRefs() { return catalogRefs; }
+
+        // Returns null at the end of the file
+        ProjectYarn next() throws IOException {
+            String line;
+            do {
+                line = in.readLine();
+                lineNo++;
+                if (line == null) return null;
+            } while (line.isEmpty());
+
+            List<String> cols = split(line, '\t');
+            if (cols.size() < 3) throw new IOException("Invalid line " + lineNo);
+            double grams = Numbers.parseDecimal(cols.get(0), Double.NaN);
+            if (Double.isNaN(grams)) throw new IOException("Invalid number in line " + lineNo);
+            String catalogName = cols.get(1).isEmpty() ? null : unescape(cols.get(1));
+            boolean edited = cols.get(2).equals("1");
+            List<FiberDef> fibers = new ArrayList<>();
+            if (cols.size() > 3 && !cols.get(3).isEmpty()) {
+                for (String fb : split(cols.get(3), '|')) {
+                    int eq = fb.lastIndexOf('=');
+                    if (eq < 0) throw new IOException("Invalid fiber in line " + lineNo);
+                    double pct = Numbers.parseDecimal(fb.substring(eq + 1), Double.NaN);
+                    if (Double.isNaN(pct)) throw new IOException("Invalid number in line " + lineNo);
+                    fibers.add(new FiberDef(unescape(fb.substring(0, eq)), pct));
+                }
+            }
+            return new ProjectYarn(catalogName, edited, grams, fibers);
+        }
+
+        @Override
+        public void close() throws IOException { in.close(); }
+    }
+
+    // Up to six decimals, never an exponent; trailing zeros are dropped
+    private static String number(double d) {
+        StringBuilder sb = Numbers.appendFixed(new StringBuilder(), d, 6, '.');
+        if (sb.indexOf(".") < 0) return sb.toString();
+        int end = sb.length();
+        while (sb.charAt(end - 1) == '0') end--;
+        if (sb.charAt(end - 1) == '.') end--;
+        return sb.substring(0, end);
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            char e = c == '\t' ? 't' : c == '\n' ? 'n' : c == '\r' ? 'r' : (c == '\\' || c == '|' || c == '=') ? c : 0;
+            if (e != 0 && sb == null) sb = new StringBuilder(s.length() + 4).append(s, 0, i);
+            if (sb != null) {
+                if (e != 0) sb.append('\\').append(e);
+                else sb.append(c);
+            }
+        }
+        return sb == null ? s : sb.toString();
+    }
+
+    // Splits on unescaped separators; the parts keep their escapes
+    private static List<String> split(String s, char sep) {
+        List<String> res = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\') i++;
+            else if (c == sep) {
+                res.add(s.substring(start, i));
+                start = i + 1;
+            }
+        }
+        res.add(s.substring(start));
+        return res;
+    }
+
+    private static String unescape(String s) {
+        if (s.indexOf('\\') < 0) return s;
+        StringBuilder b = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char n = s.charAt(++i);
+                b.append(n == 't' ? '\t' : n == 'n' ? '\n' : n == 'r' ? '\r' : n);
+            } else {
+                b.append(c);
+            }
+        }
+        return b.toString();
+    }
+}
+
+class RecentProjects {
+    private static final String FILE = "recent_projects.txt";
+    private static final int MAX = 10;
+
+    static class Entry {
+        final File file;
+        final int yarnCount;
+        Entry(File file, int yarnCount) { this.file = file; this.yarnCount = yarnCount; }
+    }
+
+    // Most recent first; entries whose file is gone are dropped
+    static List<Entry> load() {
+        List<Entry> res = new ArrayList<>();
+        File f = new File(FILE);
+        if (!f.exists()) return res;
+        try {
+            for (String line : Files.readAllLines(f.toPath(), StandardCharsets.UTF_8)) {
+                int tab = line.lastIndexOf('\t');
+                if (tab < 0) continue;
+                File pf = new File(line.substring(0, tab));
+                if (!pf.exists()) continue;
+                try { res.add(new Entry(pf, Integer.parseInt(line.substring(tab + 1)))); }
+                catch (NumberFormatException ignored) { }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return res;
+    }
+
+    static void touch(File project, int yarnCount) {
+        File abs = project.getAbsoluteFile();
+        List<Entry> entries = load();
+        entries.removeIf(e -> e.file.getAbsoluteFile().equals(abs));
+        entries.add(0, new Entry(abs, yarnCount));
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < entries.size() && i < MAX; i++) {
+            sb.append(entries.get(i).file.getPath()).append('\t').append(entries.get(i).yarnCount).append('\n');
+        }
+        try { Files.write(new File(FILE).toPath(), sb.toString().getBytes(StandardCharsets.UTF_8)); }
+        catch (IOException e) { e.printStackTrace(); }
+    }
+}
+
+// Reverse index from catalog yarn names to the saved projects that reference them,
+// built from the project file headers. Indexed are the projects in the recent list, the
+// *.garn files in the working directory, the projects still flagged in project_flags.txt
+// and every project saved or opened in this session; other projects are not tracked.
+// When catalog yarns change, only the affected projects are recomputed, in parallel on a
+// background thread. Each project whose rounded composition changed is flagged in
+// project_flags.txt next to recent_projects.txt (keyed by absolute path, appended to, so
+// the flag survives a restart and every instance sees it); the flag is cleared when the
+// project is opened. Changes this process saved are also reported in label_changes.txt;
+// a change reloaded from another instance was reported there by that instance. The
+// project files themselves are left as they are: catalog references pick up the new
+// entry when the project is opened.
+class ProjectIndex {
+    private static final String LOG_FILE = "label_changes.txt";
+    private static final ThreadLocal<LabelGenerator> LABELS = ThreadLocal.withInitial(() -> new LabelGenerator(Lang.DE));
+
+    static final class Change {
+        final File project;
+        final String before, after;   // null if a referenced yarn is missing from the catalog
+        Change(File project, String before, String after) { this.project = project; this.before = before; this.after = after; }
+    }
+
+    private static final Map<String, Set<File>> byYarn = new java.util.concurrent.ConcurrentHashMap<>();
+    private static final Map<File, Collection<String>> refsByProject = new java.util.concurrent.ConcurrentHashMap<>();
+    // Keeps rebuild and recomputations in order; each recomputation fans out itself
+    private static final java.util.concurrent.ExecutorService worker = java.util.concurrent.Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "project-index");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static void rebuild() {
+        worker.execute(() -> {
+            Set<File> files = new LinkedHashSet<>();
+            for (RecentProjects.Entry e : RecentProjects.load()) files.add(e.file.getAbsoluteFile());
+            File[] local = new File(".").getAbsoluteFile().listFiles((dir, name) -> name.endsWith("." + ProjectFile.EXTENSION));
+            if (local != null) for (File f : local) files.add(f.getAbsoluteFile());
+            for (String path : ProjectFlags.flagged()) files.add(new File(path));
+            files.parallelStream().forEach(f -> {
+                try (ProjectFile.Reader r = ProjectFile.open(f)) {
+                    update(f, r.getCatalogRefs());
+                } catch (IOException ignored) {
+                    // not a readable project; it simply isn't indexed
+                }
+            });
+            ProjectFlags.compact();
+        });
+    }
+
+    static Collection<String> refsOf(List<ProjectYarn> yarns) {
+        Set<String> refs = new LinkedHashSet<>();
+        for (ProjectYarn py : yarns) if (py.catalogName != null) refs.add(py.catalogName);
+        return refs;
+    }
+
+    // Replaces the references of one project
+    static synchronized void update(File project, Collection<String> refs) {
+        File key = project.getAbsoluteFile();
+        Collection<String> old = refsByProject.put(key, new ArrayList<>(refs));
+        if (old != null) {
+            for (String y : old) {
+                Set<File> s = byYarn.get(y);
+                if (s != null) s.remove(key);
+            }
+        }
+        for (String y : refs) byYarn.computeIfAbsent(y, k -> java.util.concurrent.ConcurrentHashMap.newKeySet()).add(key);
+    }
+
+    static Set<File> projectsUsing(Collection<String> yarns) {
+        Set<File> res = new LinkedHashSet<>();
+        for (String y : yarns) {
+            Set<File> s = byYarn.get(y);
+            if (s != null) res.addAll(s);
+        }
+        return res;
+    }
+
+    static boolean isStale(File project) { return ProjectFlags.isFlagged(project); }
+
+    // Throws if the flag store cannot be written; the flag then stays set
+    static void clearStale(File project) throws IOException {
+        if (ProjectFlags.isFlagged(project)) ProjectFlags.append(Collections.singletonList("-\t" + project.getAbsolutePath() + "\n"));
+    }
+
+    // Recomputes the projects using updated or removed yarns. onDone gets the changed ones
+    // on the EDT, with the error if they could not be flagged or reported (null otherwise).
+    static void catalogChanged(Catalog.Commit c, CatalogDiff yarnDiff, java.util.function.BiConsumer<List<Change>, IOException> onDone) {
+        Set<String> touched = new HashSet<>(yarnDiff.updated);
+        touched.addAll(yarnDiff.removed);
+        if (touched.isEmpty()) return;
+        worker.execute(() -> {
+            Set<File> affected = projectsUsing(touched);
+            if (affected.isEmpty()) return;
+            Set<File> own = projectsUsing(c.ownYarns);
+            List<Change> changes = affected.parallelStream()
+                    .map(f -> recompute(f, c.before.yarns, c.after.yarns))
+                    .filter(Objects::nonNull)
+                    .collect(java.util.stream.Collectors.toList());
+            IOException error = null;
+            if (!changes.isEmpty()) {
+                List<String> flags = new ArrayList<>(changes.size()), report = new ArrayList<>();
+                for (Change ch : changes) {
+                    String line = line(ch);
+                    flags.add("+\t" + ch.project.getAbsolutePath() + "\t" + line);
+                    if (own.contains(ch.project)) report.add(line);
+                }
+                try {
+                    ProjectFlags.append(flags);
+                    append(report);
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            IOException failed = error;
+            SwingUtilities.invokeLater(() -> onDone.accept(changes, failed));
+        });
+    }
+
+    // Streams the project once and builds the label against both catalog versions; null if it did not change
+    static Change recompute(File project, Map<String, List<FiberDef>> before, Map<String, List<FiberDef>> after) {
+        Map<String, Double> wBefore = new LinkedHashMap<>(), wAfter = new LinkedHashMap<>();
+        double total = 0.0;
+        boolean missingBefore = false, missingAfter = false;
+        try (ProjectFile.Reader r = ProjectFile.open(project)) {
+            ProjectYarn py;
+            while ((py = r.next()) != null) {
+                total += py.grams;
+                missingBefore |= !Composition.addYarnWeights(py, before, wBefore);
+                missingAfter |= !Composition.addYarnWeights(py, after, wAfter);
+            }
+        } catch (IOException e) {
+            return null; // moved or unreadable; nothing to flag
+        }
+        String lBefore = missingBefore ? null : label(wBefore, total);
+        String lAfter = missingAfter ? null : label(wAfter, total);
+        return Objects.equals(lBefore, lAfter) ? null : new Change(project, lBefore, lAfter);
+    }
+
+    // The German care label ("75% Schurwolle, 25% Polyamid"), the same as LabelGenerator
+    // everywhere else; one generator per worker thread
+    static String label(Map<String, Double> fiberWeight, double total) {
+        return LABELS.get().render(fiberWeight.entrySet(), total);
+    }
+
+    // One line per change: time, project, old label, new label ("-" for a missing yarn)
+    private static String line(Change ch) {
+        return java.time.LocalDateTime.now().withNano(0) + "\t" + ch.project.getPath() + "\t"
+                + (ch.before == null ? "-" : ch.before) + "\t" + (ch.after == null ? "-" : ch.after) + "\n";
+    }
+
+    // Report only
+    private static synchronized void append(List<String> lines) throws IOException {
+        if (lines.isEmpty()) return;
+        Files.write(new File(LOG_FILE).toPath(), String.join("", lines).getBytes(StandardCharsets.UTF_8),
+                java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.APPEND);
+    }
+}
+
+// project_flags.txt: the projects whose composition changed since they were last opened,
+// shared by all instances. A journal of "+<TAB>path<TAB>change line" (flagged) and
+// "-<TAB>path" (cleared) records; the last one per absolute path wins. Writers hold a
+// lock on the file, so appends of several instances and compact() never interleave.
+final class ProjectFlags {
+    private static final String FILE = "project_flags.txt";
+
+    private static Map<String, String> flags = Collections.emptyMap();   // path -> change line
+    private static long stamp = -1;                                        // length and time of the file read
+
+    private ProjectFlags() { }
+
+    static boolean isFlagged(File project) { return current().containsKey(project.getAbsolutePath()); }
+
+    static Set<String> flagged() { return current().keySet(); }
+
+    // Re-reads the file when it changed (also when another instance wrote it)
+    private static synchronized Map<String, String> current() {
+        File f = new File(FILE);
+        long now = f.length() * 31 + f.lastModified();
+        if (now != stamp) {
+            try {
+                flags = f.exists() ? replay(Files.readAllLines(f.toPath(), StandardCharsets.UTF_8)) : Collections.emptyMap();
+            } catch (IOException e) {
+                e.printStackTrace();   // flags are shown as a hint only; keep the last ones read
+            }
+            stamp = now;
+        }
+        return flags;
+    }
+
+    private static Map<String, String> replay(List<String> lines) {
+        Map<String, String> res = new LinkedHashMap<>();
+        for (String line : lines) {
+            String[] parts = line.split("\t", 3);
+            if (parts.length < 2) continue;
+            if (parts[0].equals("-")) res.remove(parts[1]);
+            else if (parts[0].equals("+") && parts.length == 3) res.put(parts[1], parts[2]);
+        }
+        return Collections.unmodifiableMap(res);
+    }
+
+    static synchronized void append(List<String> records) throws IOException {
+        try (java.nio.channels.FileChannel ch = java.nio.channels.FileChannel.open(new File(FILE).toPath(),
+                java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.WRITE, java.nio.file.StandardOpenOption.APPEND)) {
+            ch.lock();   // released when the channel closes
+            java.nio.ByteBuffer buf = java.nio.ByteBuffer.wrap(String.join("", records).getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) ch.write(buf);
+        }
+    }
+
+    // Drops the records that no longer count once the journal is mostly those
+    static synchronized void compact() {
+        File f = new File(FILE);
+        if (!f.exists()) return;
+        try (java.nio.channels.FileChannel ch = java.nio.channels.FileChannel.open(f.toPath(),
+                java.nio.file.StandardOpenOption.READ, java.nio.file.StandardOpenOption.WRITE)) {
+            ch.lock();   // released when the channel closes
+            java.nio.ByteBuffer in = java.nio.ByteBuffer.allocate((int) ch.size());
+            while (in.hasRemaining() && ch.read(in) >= 0) { }
+            List<String> lines = Arrays.asList(new String(in.array(), 0, in.position(), StandardCharsets.UTF_8).split("\n"));
+            Map<String, String> live = replay(lines);
+            if (lines.size() < 2 * live.size() + 64) return;
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, String> e : live.entrySet()) sb.append("+\t").append(e.getKey()).append('\t').append(e.getValue()).append('\n');
+            java.nio.ByteBuffer out = java.nio.ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            ch.truncate(0);
+            ch.position(0);
+            while (out.hasRemaining()) ch.write(out);
+        } catch (IOException e) {
+            e.printStackTrace();   // the journal stays valid, only longer
+        }
+    }
+}
+
+// Care-label composition lines, e.g. "75% Schurwolle, 25% Polyamid" / "75% New wool,
+// 25% Polyamide". Fibers are listed by descending share (EU textile labelling), ties by
+// name, "other fibers" last, with shares rounded to whole percents (largest remainder, so they add up to 100);
+// fibers that round to 0 % are left out. Names are translated through the Text dictionary
+// ("fiber_<Name>"), with fiber_names.json taking precedence. The template is compiled
+// once; one generator reuses its buffers and is meant for one thread.
+final class LabelGenerator {
+    static final String DEFAULT_ITEM = "{pct}% {fiber}";
+    static final String DEFAULT_SEPARATOR = ", ";
+
+    // fiber_names.json: { "German name": "English name", ... }
+    private static volatile Map<String, String> englishNames = Collections.emptyMap();
+
+    private final Lang lang;
+    private final String otherName;
+    private final Template item;
+    private final String separator;
+    private final StringBuilder buf = new StringBuilder(64);
+    private String[] names = new String[8];
+    private double[] weights = new double[8];
+    private int[] order = new int[8];
+    private long[] units = new long[8], percents = new long[8];
+    private double[] scratch = new double[8];
+    // Catalog name -> label name in this language, for the fiber_names.json it was built from
+    private final Map<String, String> translated = new HashMap<>();
+    private Map<String, String> translatedFrom;
+
+    LabelGenerator(Lang lang) { this(lang, DEFAULT_ITEM, DEFAULT_SEPARATOR); }
+
+    LabelGenerator(Lang lang, String itemTemplate, String separator) {
+        this.lang = lang;
+        this.otherName = Text.find("other_fibers", lang);
+        this.item = Template.compile(itemTemplate);
+        this.separator = separator;
+    }
+
+    static void loadFiberNames(String file) {
+        englishNames = DataLoader.loadStringMapFromFile(file);
+    }
+
+    static String translate(String fiber, Lang lang) {
+        if (fiber.equals(Text.find("other_fibers", Lang.DE)) || fiber.equals(Text.find("other_fibers", Lang.EN))) {
+            return Text.find("other_fibers", lang);
+        }
+        if (lang == Lang.EN) {
+            String own = englishNames.get(fiber);
+            if (own != null) return own;
+        }
+        String t = Text.find("fiber_" + fiber, lang);
+        return t != null ? t : fiber;
+    }
+
+    // weights: fiber (German catalog name) -> weight, in any order
+    String render(Collection<Map.Entry<String, Double>> fiberWeights, double total) {
+        int n = 0;
+        if (names.length < fiberWeights.size()) {
+            names = new String[fiberWeights.size()];
+            weights = new double[fiberWeights.size()];
+            order = new int[fiberWeights.size()];
+            units = new long[fiberWeights.size()];
+            percents = new long[fiberWeights.size()];
+            scratch = new double[fiberWeights.size()];
+        }
+        if (translatedFrom != englishNames) {
+            translated.clear();
+            translatedFrom = englishNames;
+        }
+        outer:
+        for (Map.Entry<String, Double> e : fiberWeights) {
+            String name = translated.computeIfAbsent(e.getKey(), f -> translate(f, lang));
+            // Two catalog fibers can translate to the same name (fiber_names.json): list it once
+            for (int i = 0; i < n; i++) {
+                if (names[i].equals(name)) {
+                    weights[i] += e.getValue();
+                    continue outer;
+                }
+            }
+            names[n] = name;
+            weights[n] = e.getValue();
+            n++;
+        }
+        return render(n, total);
+    }
+
+    private String render(int n, double total) {
+        buf.setLength(0);
+        if (n == 0 || total <= 0.0) return "";
+        Composition.roundToUnits(weights, 0, n, total, item.tenths ? 1000 : 100, units, scratch);
+        // {pct} next to {pct.1}: whole percents of their own, so they add up to 100 as well
+        long[] whole = units;
+        if (item.tenths && item.percent) {
+            Composition.roundToUnits(weights, 0, n, total, 100, percents, scratch);
+            whole = percents;
+        }
+
+        // Insertion sort: labels have few fibers
+        for (int i = 0; i < n; i++) {
+            int k = i;
+            while (k > 0 && before(i, order[k - 1], units)) {
+                order[k] = order[k - 1];
+                k--;
+            }
+            order[k] = i;
+        }
+
+        char sep = Numbers.decimalSeparator(lang.locale);
+        boolean first = true;
+        for (int k = 0; k < n; k++) {
+            int i = order[k];
+            if (units[i] == 0) continue;
+            if (!first) buf.append(separator);
+            item.render(buf, whole[i], units[i], names[i], sep);
+            first = false;
+        }
+        return buf.toString();
+    }
+
+    private boolean before(int a, int b, long[] units) {
+        boolean otherA = names[a].equals(otherName), otherB = names[b].equals(otherName);
+        if (otherA != otherB) return otherB;
+        if (units[a] != units[b]) return units[a] > units[b];
+        if (weights[a] != weights[b]) return weights[a] > weights[b];
+        return names[a].compareTo(names[b]) < 0;
+    }
+
+    // Labels for many saved projects, computed in parallel: "file<TAB>German<TAB>English".
+    // A project that cannot be labelled is left out and added to failures ("file: reason").
+    static List<String> forProjects(List<File> projects, Map<String, List<FiberDef>> catalog, List<String> failures) {
+        ThreadLocal<LabelGenerator[]> generators = ThreadLocal.withInitial(() -> new LabelGenerator[] {
+                new LabelGenerator(Lang.DE), new LabelGenerator(Lang.EN) });
+        String[] lines = new String[projects.size()];
+        String[] errors = new String[projects.size()];
+        java.util.stream.IntStream.range(0, lines.length).parallel().forEach(i -> {
+            File f = projects.get(i);
+            Map<String, Double> w = new LinkedHashMap<>();
+            double total = 0.0;
+            try (ProjectFile.Reader r = ProjectFile.open(f)) {
+                ProjectYarn py;
+                while ((py = r.next()) != null) {
+                    if (!Composition.addYarnWeights(py, catalog, w)) {
+                        errors[i] = f.getName() + ": " + py.catalogName + " " + Text.get("label_missing");
+                        return;
+                    }
+                    total += py.grams;
+                }
+            } catch (IOException e) {
+                errors[i] = f.getName() + ": " + e.getMessage();
+                return;
+            }
+            LabelGenerator[] g = generators.get();
+            lines[i] = f.getName() + "\t" + g[0].render(w.entrySet(), total) + "\t" + g[1].render(w.entrySet(), total);
+        });
+        List<String> res = new ArrayList<>(lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i] != null) res.add(lines[i]);
+            else failures.add(errors[i]);
+        }
+        return res;
+    }
+
+    // "{pct}% {fiber}" split into literals and placeholders. {pct} is the whole percent,
+    // {pct.1} the percent with one decimal (shares are then rounded to tenths).
+    static final class Template {
+        private static final int LITERAL = 0, PCT = 1, PCT_TENTHS = 2, FIBER = 3;
+        private final int[] kinds;
+        private final String[] literals;
+        final boolean tenths, percent;   // uses {pct.1}, uses {pct}
+
+        private Template(int[] kinds, String[] literals) {
+            this.kinds = kinds;
+            this.literals = literals;
+            boolean t = false, p = false;
+            for (int k : kinds) {
+                t |= k == PCT_TENTHS;
+                p |= k == PCT;
+            }
+            this.tenths = t;
+            this.percent = p;
+        }
+
+        static Template compile(String pattern) {
+            List<Integer> kinds = new ArrayList<>();
+            List<String> literals = new ArrayList<>();
+            int i = 0;
+            while (i < pattern.length()) {
+                int open = pattern.indexOf('{', i);
+                if (open < 0) open = pattern.length();
+                if (open > i) {
+                    kinds.add(LITERAL);
+                    literals.add(pattern.substring(i, open));
+                }
+                if (open == pattern.length()) break;
+                int close = pattern.indexOf('}', open);
+                if (close < 0) throw new IllegalArgumentException("Unclosed placeholder in " + pattern);
+                String name = pattern.substring(open + 1, close);
+                switch (name) {
+                    case "pct": kinds.add(PCT); break;
+                    case "pct.1": kinds.add(PCT_TENTHS); break;
+                    case "fiber": kinds.add(FIBER); break;
+                    default: throw new IllegalArgumentException("Unknown placeholder {" + name + "}");
+                }
+                literals.add(null);
+                i = close + 1;
+            }
+            int[] k = new int[kinds.size()];
+            for (int j = 0; j < k.length; j++) k[j] = kinds.get(j);
+            return new Template(k, literals.toArray(new String[0]));
+        }
+
+        // Both rounded separately by largest remainder: whole percents for {pct}, tenths for {pct.1}
+        void render(StringBuilder sb, long percent, long tenths, String fiber, char decimalSeparator) {
+            for (int j = 0; j < kinds.length; j++) {
+                switch (kinds[j]) {
+                    case LITERAL: sb.append(literals[j]); break;
+                    case PCT: sb.append(percent); break;
+                    case PCT_TENTHS: sb.append(tenths / 10).append(decimalSeparator).append(tenths % 10); break;
+                    default: sb.append(fiber);
+                }
+            }
+        }
+    }
+}
+
+// Edits reported by the yarn panels
+interface ProjectEditListener {
+    ProjectEditListener NONE = new ProjectEditListener() {
+        @Override public void typed(YarnPanel yp) { }
+        @Override public void changed(YarnPanel yp) { }
+    };
+
+    void typed(YarnPanel yp);     // keystrokes, coalesced until a pause
+    void changed(YarnPanel yp);   // buttons and selections, one step each
+}
+
+// Undo/redo over an immutable project model (one ProjectYarn per panel). A step only
+// stores the yarn that changed, so unchanged yarns and fiber lists are shared between
+// all states; undo and redo apply a single step.
+class ProjectHistory implements ProjectEditListener {
+    static final int MAX_STEPS = 10_000;
+    static final int COALESCE_MS = 600;
+
+    // How the history reads and changes the panels
+    interface View {
+        int size();
+        int indexOf(YarnPanel yp);
+        ProjectYarn capture(int index);
+        void apply(int index, ProjectYarn py);
+        void insert(int index, ProjectYarn py);
+        void remove(int index);
+        void historyChanged();
+    }
+
+    private static final class Step {
+        final int index;
+        final ProjectYarn before, after;    // before == null: yarn added, after == null: yarn removed
+
+        Step(int index, ProjectYarn before, ProjectYarn after) {
+            this.index = index; this.before = before; this.after = after;
+        }
+    }
+
+    private final View view;
+    private final List<ProjectYarn> model = new ArrayList<>();
+
+    // Ring buffer: steps[(first + i) % MAX_STEPS] for i < size, the first `cursor` are done
+    private final Step[] steps = new Step[MAX_STEPS];
+    private int first, size, cursor;
+
+    private YarnPanel pending;
+    private final javax.swing.Timer coalesce = new javax.swing.Timer(COALESCE_MS, e -> flush());
+    private boolean applying;
+
+    ProjectHistory(View view) {
+        this.view = view;
+        coalesce.setRepeats(false);
+    }
+
+    boolean canUndo() { return cursor > 0; }
+    boolean canRedo() { return cursor < size; }
+
+    @Override
+    public void typed(YarnPanel yp) {
+        if (applying) return;
+        if (pending != yp) flush();
+        pending = yp;
+        coalesce.restart();
+    }
+
+    @Override
+    public void changed(YarnPanel yp) {
+        if (applying) return;
+        if (pending != yp) flush();
+        pending = yp;
+        flush();
+    }
+
+    // Records the pending keystrokes (if they changed anything) as one step
+    void flush() {
+        coalesce.stop();
+        YarnPanel yp = pending;
+        pending = null;
+        if (yp == null) return;
+        int index = view.indexOf(yp);
+        if (index < 0 || index >= model.size()) return;
+        ProjectYarn before = model.get(index);
+        ProjectYarn after = view.capture(index);
+        if (after.sameAs(before)) return;
+        after = after.sharingFibersWith(before);
+        model.set(index, after);
+        push(new Step(index, before, after));
+    }
+
+    // A yarn panel was added at index
+    void inserted(int index) {
+        if (applying) return;
+        flush();
+        ProjectYarn py = view.capture(index);
+        model.add(index, py);
+        push(new Step(index, null, py));
+    }
+
+    // The yarn panel at index is about to be removed
+    void removing(int index) {
+        if (applying) return;
+        flush();
+        push(new Step(index, model.remove(index), null));
+    }
+
+    // A panel streamed in from a project file; part of the initial state, not a step
+    void loaded(int index) {
+        model.add(index, view.capture(index));
+    }
+
+    // New project: forget the steps and take the current panels as the initial state
+    void clear() {
+        coalesce.stop();
+        pending = null;
+        Arrays.fill(steps, null);
+        first = size = cursor = 0;
+        model.clear();
+        for (int i = 0; i < view.size(); i++) model.add(view.capture(i));
+        view.historyChanged();
+    }
+
+    // Re-reads the panels after changes that are not user edits (catalog updates)
+    void resync() {
+        for (int i = 0; i < model.size(); i++) {
+            ProjectYarn now = view.capture(i);
+            if (!now.sameAs(model.get(i))) model.set(i, now.sharingFibersWith(model.get(i)));
+        }
+    }
+
+    void undo() {
+        flush();
+        if (!canUndo()) return;
+        Step s = steps[(first + --cursor) % MAX_STEPS];
+        apply(s.index, s.after, s.before);
+    }
+
+    void redo() {
+        flush();
+        if (!canRedo()) return;
+        Step s = steps[(first + cursor++) % MAX_STEPS];
+        apply(s.index, s.before, s.after);
+    }
+
+    private void apply(int index, ProjectYarn from, ProjectYarn to) {
+        applying = true;
+        try {
+            if (from == null) {
+                view.insert(index, to);
+                model.add(index, view.capture(index));
+            } else if (to == null) {
+                view.remove(index);
+                model.remove(index);
+            } else {
+                view.apply(index, to);
+                // The catalog may have changed since; keep what the panel really shows
+                model.set(index, view.capture(index).sharingFibersWith(to));
+            }
+        } finally {
+            applying = false;
+        }
+        view.historyChanged();
+    }
+
+    private void push(Step s) {
+        // A new edit drops the redo branch; when full, the oldest step is dropped
+        for (int i = cursor; i < size; i++) steps[(first + i) % MAX_STEPS] = null;
+        size = cursor;
+        if (size == MAX_STEPS) {
+            steps[first] = null;
+            first = (first + 1) % MAX_STEPS;
+            size--;
+            cursor--;
+        }
+        steps[(first + size) % MAX_STEPS] = s;
+        size++;
+        cursor++;
+        view.historyChanged();
+    }
+}
+
+// --- Catalog ---
+
+// Shared pool of fiber names. IDs are stable for the lifetime of the process, so
+// all catalog versions (and batch code) can refer to fibers by int.
+final class FiberPool {
+    private static final Map<String, Integer> ids = new HashMap<>();
+    private static volatile String[] names = new String[32];
+    private static int count;
+
+    static synchronized int idOf(String name) {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+        if (count == names.length) names = Arrays.copyOf(names, count * 2);
+        names[count] = name;
+        ids.put(name, count);
+        return count++;
+    }
+
+    static String name(int id) { return names[id]; }
+
+    // -1 if no yarn has used the fiber yet
+    static synchronized int find(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    static synchronized int size() { return count; }
+}
+
+// Struct-of-arrays yarn catalog. Per yarn: a UTF-8 name in one shared byte blob and a
+// range of (fiber ID, percent in hundredths) pairs in two flat int arrays. Lookups go
+// through an open-addressing hash table of row numbers. Immutable; implements the
+// read-only Map view the UI uses, with fiber lists materialized on access.
+//
+// A table is a set of compact columns plus a small overlay: added rows, base rows with
+// new fibers and removed rows. A table built from another one shares its columns and
+// copies only the overlay, so a save costs the change, not the catalog; once the overlay
+// passes COMPACT_AT, build() writes new compact columns. Rows are physical: a removed
+// row stays as a hole (see isLive) until then, so the rows of the tables sharing the
+// columns keep their numbers.
+final class YarnTable extends AbstractMap<String, List<FiberDef>> {
+    static final int COMPACT_AT = 4096;   // overlay rows and holes before build() compacts
+
+    private static final BitSet NO_ROWS = new BitSet();   // never modified
+    private static final int[] NONE = new int[0];
+    private static final byte[][] NO_NAMES = new byte[0][];
+
+    static final YarnTable EMPTY = new Builder(null).build();
+
+    // Compact rows; shared by all tables built on top of them
+    private static final class Columns {
+        final int rows;
+        final byte[] nameBytes;
+        final int[] nameOffsets;   // rows + 1
+        final int[] nameHashes;
+        final int[] fiberOffsets;  // rows + 1
+        final int[] fiberIds;
+        final int[] percents;      // hundredths of a percent
+        final int[] slots;         // row + 1, 0 = empty
+
+        Columns(int rows, byte[] nameBytes, int[] nameOffsets, int[] nameHashes, int[] fiberOffsets, int[] fiberIds, int[] percents) {
+            this.rows = rows;
+            this.nameBytes = nameBytes;
+            this.nameOffsets = nameOffsets;
+            this.nameHashes = nameHashes;
+            this.fiberOffsets = fiberOffsets;
+            this.fiberIds = fiberIds;
+            this.percents = percents;
+
+            int cap = Integer.highestOneBit(Math.max(4, rows * 2 - 1)) << 1;
+            slots = new int[cap];
+            for (int row = 0; row < rows; row++) {
+                int i = nameHashes[row] & (cap - 1);
+                while (slots[i] != 0) i = (i + 1) & (cap - 1);
+                slots[i] = row + 1;
+            }
+        }
+
+        // Row with this name (removed or not), -1 if none
+        int find(int h, byte[] key, int from, int to) {
+            int mask = slots.length - 1;
+            for (int i = h & mask; slots[i] != 0; i = (i + 1) & mask) {
+                int row = slots[i] - 1;
+                if (nameHashes[row] == h && Arrays.equals(nameBytes, nameOffsets[row], nameOffsets[row + 1], key, from, to)) return row;
+            }
+            return -1;
+        }
+    }
+
+    private final Columns cols;
+    // Overlay
+    private final int rowCount;                  // cols.rows + added rows, holes included
+    private final int size;                      // rows that are not holes
+    private final BitSet removed;                // holes
+    private final int[] holes;                   // the same rows, ascending
+    private final BitSet replacedRows;           // base rows whose fibers are in the overlay
+    private final Map<Integer, int[]> replaced;  // base row -> {start, end} fiber positions
+    private final byte[][] addedNames;           // by row - cols.rows
+    private final int[] addedHashes;
+    private final int[] addedStart, addedEnd;
+    private final int[] addedSlots;              // row + 1 of the live added rows, 0 = empty
+    private final int[] extraIds, extraPercents; // fiber positions from cols.fiberIds.length on
+    private volatile FiberIndex fiberIndex;
+    private volatile int widestRow = -1;         // -1: not known yet
+
+    private YarnTable(Columns cols, BitSet removed, int[] holes, BitSet replacedRows, Map<Integer, int[]> replaced,
+                      byte[][] addedNames, int[] addedHashes, int[] addedStart, int[] addedEnd,
+                      int[] extraIds, int[] extraPercents) {
+        this.cols = cols;
+        this.removed = removed;
+        this.holes = holes;
+        this.replacedRows = replacedRows;
+        this.replaced = replaced;
+        this.addedNames = addedNames;
+        this.addedHashes = addedHashes;
+        this.addedStart = addedStart;
+        this.addedEnd = addedEnd;
+        this.extraIds = extraIds;
+        this.extraPercents = extraPercents;
+        rowCount = cols.rows + addedNames.length;
+        size = rowCount - holes.length;
+
+        int cap = Integer.highestOneBit(Math.max(4, addedNames.length * 2 - 1)) << 1;
+        addedSlots = new int[cap];
+        for (int row = cols.rows; row < rowCount; row++) {
+            if (removed.get(row)) continue;
+            int i = addedHashes[row - cols.rows] & (cap - 1);
+            while (addedSlots[i] != 0) i = (i + 1) & (cap - 1);
+            addedSlots[i] = row + 1;
+        }
+    }
+
+    private static YarnTable compactTable(Columns cols) {
+        return new YarnTable(cols, NO_ROWS, NONE, NO_ROWS, Collections.emptyMap(), NO_NAMES, NONE, NONE, NONE, NONE, NONE);
+    }
+
+    // --- Column access for batch code ---
+
+    // Rows are 0 .. rowCount() - 1, holes included
+    int rowCount() { return rowCount; }
+    boolean isLive(int row) { return !removed.get(row); }
+
+    // Row of the position-th yarn in table order (0 <= position < size())
+    int row(int position) {
+        // Below holes[j] there are holes[j] - j yarns
+        int lo = 0, hi = holes.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (holes[mid] - mid <= position) lo = mid + 1;
+            else hi = mid;
+        }
+        return position + lo;
+    }
+
+    String name(int row) {
+        if (row >= cols.rows) return new String(addedNames[row - cols.rows], StandardCharsets.UTF_8);
+        return new String(cols.nameBytes, cols.nameOffsets[row], cols.nameOffsets[row + 1] - cols.nameOffsets[row], StandardCharsets.UTF_8);
+    }
+
+    int nameLength(int row) {
+        return row >= cols.rows ? addedNames[row - cols.rows].length : cols.nameOffsets[row + 1] - cols.nameOffsets[row];
+    }
+
+    private int nameHash(int row) { return row >= cols.rows ? addedHashes[row - cols.rows] : cols.nameHashes[row]; }
+
+    // Fiber positions of a row: fiberStart(row) .. fiberEnd(row) - 1
+    int fiberStart(int row) {
+        if (row >= cols.rows) return addedStart[row - cols.rows];
+        return replacedRows.get(row) ? replaced.get(row)[0] : cols.fiberOffsets[row];
+    }
+
+    int fiberEnd(int row) {
+        if (row >= cols.rows) return addedEnd[row - cols.rows];
+        return replacedRows.get(row) ? replaced.get(row)[1] : cols.fiberOffsets[row + 1];
+    }
+
+    int fiberId(int k) {
+        int base = cols.fiberIds.length;
+        return k < base ? cols.fiberIds[k] : extraIds[k - base];
+    }
+
+    int percentHundredths(int k) {
+        int base = cols.percents.length;
+        return k < base ? cols.percents[k] : extraPercents[k - base];
+    }
+
+    // -1 if the yarn does not exist
+    int indexOf(String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        return find(name.hashCode(), key, 0, key.length);
+    }
+
+    // Row of the yarn named like row otherRow of another table (-1 if none), without decoding the name
+    int indexOf(YarnTable other, int otherRow) {
+        if (otherRow >= other.cols.rows) {
+            byte[] key = other.addedNames[otherRow - other.cols.rows];
+            return find(other.nameHash(otherRow), key, 0, key.length);
+        }
+        return find(other.cols.nameHashes[otherRow], other.cols.nameBytes, other.cols.nameOffsets[otherRow], other.cols.nameOffsets[otherRow + 1]);
+    }
+
+    private int find(int h, byte[] key, int from, int to) {
+        int row = cols.find(h, key, from, to);
+        if (row >= 0 && !removed.get(row)) return row;
+        if (addedNames.length == 0) return -1;
+        int mask = addedSlots.length - 1;
+        for (int i = h & mask; addedSlots[i] != 0; i = (i + 1) & mask) {
+            int r = addedSlots[i] - 1, a = r - cols.rows;
+            if (addedHashes[a] == h && Arrays.equals(addedNames[a], 0, addedNames[a].length, key, from, to)) return r;
+        }
+        return -1;
+    }
+
+    // Same fibers with the same percentages in the same order
+    boolean sameFibers(int row, YarnTable other, int otherRow) {
+        int a = fiberStart(row), n = fiberEnd(row) - a, b = other.fiberStart(otherRow);
+        if (other.fiberEnd(otherRow) - b != n) return false;
+        for (int i = 0; i < n; i++) {
+            if (fiberId(a + i) != other.fiberId(b + i) || percentHundredths(a + i) != other.percentHundredths(b + i)) return false;
+        }
+        return true;
+    }
+
+    // Copies the fibers of a row to the given arrays; returns their number
+    private int copyFibers(int row, int[] ids, int[] pcts, int at) {
+        int from = fiberStart(row), n = fiberEnd(row) - from, base = cols.fiberIds.length;
+        if (from >= base) {
+            System.arraycopy(extraIds, from - base, ids, at, n);
+            System.arraycopy(extraPercents, from - base, pcts, at, n);
+        } else {
+            System.arraycopy(cols.fiberIds, from, ids, at, n);
+            System.arraycopy(cols.percents, from, pcts, at, n);
+        }
+        return n;
+    }
+
+    // Removed rows; the index reads them, nobody modifies them
+    BitSet holes() { return removed; }
+
+    // Longest name in bytes; dropdowns use it as their size prototype. Found once per
+    // table, or carried over from the base table by Builder.build() while its row lives.
+    String widestName() {
+        int w = widestRow;
+        if (w < 0) {
+            if (size == 0) return "";
+            int bestLen = -1;
+            for (int row = 0; row < rowCount; row++) {
+                if (removed.get(row)) continue;
+                int len = nameLength(row);
+                if (len > bestLen) { w = row; bestLen = len; }
+            }
+            widestRow = w;
+        }
+        return name(w);
+    }
+
+    // Built once per table (Catalog.commit does so before publishing); stays valid because the table never changes
+    FiberIndex fiberIndex() {
+        FiberIndex idx = fiberIndex;
+        if (idx == null) fiberIndex = idx = new FiberIndex(this);
+        return idx;
+    }
+
+    List<FiberDef> fibers(int row) {
+        int start = fiberStart(row);
+        int n = fiberEnd(row) - start;
+        return new AbstractList<FiberDef>() {
+            @Override public FiberDef get(int i) {
+                Objects.checkIndex(i, n);
+                return new FiberDef(FiberPool.name(fiberId(start + i)), percentHundredths(start + i) / 100.0);
+            }
+            @Override public int size() { return n; }
+        };
+    }
+
+    // --- Map view ---
+
+    @Override public int size() { return size; }
+
+    @Override public boolean containsKey(Object key) {
+        return key instanceof String && indexOf((String) key) >= 0;
+    }
+
+    @Override public List<FiberDef> get(Object key) {
+        int row = key instanceof String ? indexOf((String) key) : -1;
+        return row < 0 ? null : fibers(row);
+    }
+
+    @Override public Set<Map.Entry<String, List<FiberDef>>> entrySet() {
+        return new AbstractSet<Map.Entry<String, List<FiberDef>>>() {
+            @Override public int size() { return size; }
+            @Override public Iterator<Map.Entry<String, List<FiberDef>>> iterator() {
+                return new Iterator<Map.Entry<String, List<FiberDef>>>() {
+                    int row = removed.nextClearBit(0);
+                    @Override public boolean hasNext() { return row < rowCount; }
+                    @Override public Map.Entry<String, List<FiberDef>> next() {
+                        if (row >= rowCount) throw new NoSuchElementException();
+                        int r = row;
+                        row = removed.nextClearBit(row + 1);
+                        return new AbstractMap.SimpleImmutableEntry<>(name(r), fibers(r));
+                    }
+                };
+            }
+        };
+    }
+
+    // Collects changes against a base table. Changed yarns keep their position (like
+    // LinkedHashMap.put), new ones are appended. build() adds them to the base's overlay,
+    // or writes new compact columns once the overlay gets too large.
+    static final class Builder {
+        private final YarnTable base;
+        private final int baseCount;   // base rows, holes included
+        private final BitSet removed = new BitSet();
+        private final Map<Integer, int[]> replacedRanges = new HashMap<>();   // base row -> {start, end} in extra
+        private final List<String> addedNames = new ArrayList<>();
+        private final List<int[]> addedRanges = new ArrayList<>();
+        private final Map<String, Integer> addedRows = new HashMap<>();
+        private final Set<String> changed = new LinkedHashSet<>();
+        private int[] extraIds = new int[16];
+        private int[] extraPercents = new int[16];
+        private int extraCount;
+
+        Builder(YarnTable base) {
+            this.base = base;
+            this.baseCount = base == null ? 0 : base.rowCount;
+        }
+
+        private int rowOf(String name) {
+            Integer added = addedRows.get(name);
+            if (added != null) return added;
+            int row = base == null ? -1 : base.indexOf(name);
+            return row >= 0 && !removed.get(row) ? row : -1;
+        }
+
+        boolean containsKey(String name) { return rowOf(name) >= 0; }
+
+        // Every name put or removed so far
+        Set<String> changedNames() { return changed; }
+
+        // Percentages must be finite, the columns have no representation for NaN
+        void put(String name, List<FiberDef> fibers) {
+            for (FiberDef fd : fibers) {
+                if (!Double.isFinite(fd.percentage)) throw new IllegalArgumentException("Invalid percentage for " + fd.name + " in " + name);
+            }
+            ensureExtra(fibers.size());
+            int start = extraCount;
+            for (FiberDef fd : fibers) {
+                extraIds[extraCount] = FiberPool.idOf(fd.name);
+                extraPercents[extraCount] = (int) Math.round(fd.percentage * 100.0);
+                extraCount++;
+            }
+            place(name, new int[]{start, extraCount});
+        }
+
+        // Copies row srcRow of another table without going through FiberDef lists
+        void put(YarnTable src, int srcRow) {
+            int n = src.fiberEnd(srcRow) - src.fiberStart(srcRow);
+            ensureExtra(n);
+            src.copyFibers(srcRow, extraIds, extraPercents, extraCount);
+            extraCount += n;
+            place(src.name(srcRow), new int[]{extraCount - n, extraCount});
+        }
+
+        private void ensureExtra(int n) {
+            if (extraCount + n > extraIds.length) {
+                int cap = Math.max(extraIds.length * 2, extraCount + n);
+                extraIds = Arrays.copyOf(extraIds, cap);
+                extraPercents = Arrays.copyOf(extraPercents, cap);
+            }
+        }
+
+        private void place(String name, int[] range) {
+            changed.add(name);
+
+            int row = rowOf(name);
+            if (row < 0) {
+                addedRows.put(name, baseCount + addedNames.size());
+                addedNames.add(name);
+                addedRanges.add(range);
+            } else if (row < baseCount) {
+                replacedRanges.put(row, range);
+            } else {
+                addedRanges.set(row - baseCount, range);
+            }
+        }
+
+        void remove(String name) {
+            int row = rowOf(name);
+            if (row < 0) return;
+            changed.add(name);
+            removed.set(row);
+            replacedRanges.remove(row);
+            if (row >= baseCount) addedRows.remove(name);
+        }
+
+        YarnTable build() {
+            if (base == null) return compact();
+            int overlay = base.addedNames.length + base.replaced.size() + base.holes.length
+                    + addedNames.size() + replacedRanges.size() + removed.cardinality();
+            // Replaced fibers stay in the overlay's arrays, so repeated saves of one yarn count as well
+            int fibers = base.extraIds.length + extraCount;
+            return overlay > COMPACT_AT || fibers > 16 * COMPACT_AT ? compact() : overlay();
+        }
+
+        private boolean live(int row) {
+            return !removed.get(row) && (row >= baseCount || base.isLive(row));
+        }
+
+        // New compact columns with every live row, in table order
+        private YarnTable compact() {
+            int total = baseCount + addedNames.size();
+            byte[][] addedBytes = new byte[addedNames.size()][];
+            int size = 0, nameLen = 0, fiberLen = 0;
+            for (int row = 0; row < total; row++) {
+                if (!live(row)) continue;
+                size++;
+                if (row < baseCount) {
+                    nameLen += base.nameLength(row);
+                } else {
+                    addedBytes[row - baseCount] = addedNames.get(row - baseCount).getBytes(StandardCharsets.UTF_8);
+                    nameLen += addedBytes[row - baseCount].length;
+                }
+                int[] r = ownRange(row);
+                fiberLen += r != null ? r[1] - r[0] : base.fiberEnd(row) - base.fiberStart(row);
+            }
+
+            byte[] nameBytes = new byte[nameLen];
+            int[] nameOffsets = new int[size + 1];
+            int[] nameHashes = new int[size];
+            int[] fiberOffsets = new int[size + 1];
+            int[] fiberIds = new int[fiberLen];
+            int[] percents = new int[fiberLen];
+
+            int out = 0, np = 0, fp = 0;
+            for (int row = 0; row < total; row++) {
+                if (!live(row)) continue;
+                if (row < baseCount) {
+                    int len = base.nameLength(row);
+                    if (row < base.cols.rows) System.arraycopy(base.cols.nameBytes, base.cols.nameOffsets[row], nameBytes, np, len);
+                    else System.arraycopy(base.addedNames[row - base.cols.rows], 0, nameBytes, np, len);
+                    np += len;
+                    nameHashes[out] = base.nameHash(row);
+                } else {
+                    byte[] b = addedBytes[row - baseCount];
+                    System.arraycopy(b, 0, nameBytes, np, b.length);
+                    np += b.length;
+                    nameHashes[out] = addedNames.get(row - baseCount).hashCode();
+                }
+                int[] r = ownRange(row);
+                if (r != null) {
+                    System.arraycopy(extraIds, r[0], fiberIds, fp, r[1] - r[0]);
+                    System.arraycopy(extraPercents, r[0], percents, fp, r[1] - r[0]);
+                    fp += r[1] - r[0];
+                } else {
+                    fp += base.copyFibers(row, fiberIds, percents, fp);
+                }
+                out++;
+                nameOffsets[out] = np;
+                fiberOffsets[out] = fp;
+            }
+            return compactTable(new Columns(size, nameBytes, nameOffsets, nameHashes, fiberOffsets, fiberIds, percents));
+        }
+
+        // Fibers of the row in extra, null if they are the base table's
+        private int[] ownRange(int row) {
+            return row >= baseCount ? addedRanges.get(row - baseCount) : replacedRanges.get(row);
+        }
+
+        // The base's columns with its overlay plus these changes
+        private YarnTable overlay() {
+            Columns c = base.cols;
+            int oldExtra = base.extraIds.length;
+            int shift = c.fiberIds.length + oldExtra;   // fiber position of extra[0]
+            int[] ids = Arrays.copyOf(base.extraIds, oldExtra + extraCount);
+            int[] pcts = Arrays.copyOf(base.extraPercents, oldExtra + extraCount);
+            System.arraycopy(extraIds, 0, ids, oldExtra, extraCount);
+            System.arraycopy(extraPercents, 0, pcts, oldExtra, extraCount);
+
+            int oldAdded = base.addedNames.length, newAdded = oldAdded;
+            for (int i = 0; i < addedNames.size(); i++) if (!removed.get(baseCount + i)) newAdded++;
+            byte[][] names = Arrays.copyOf(base.addedNames, newAdded);
+            int[] hashes = Arrays.copyOf(base.addedHashes, newAdded);
+            int[] starts = Arrays.copyOf(base.addedStart, newAdded);
+            int[] ends = Arrays.copyOf(base.addedEnd, newAdded);
+
+            BitSet holes = base.removed;
+            BitSet replacedRows = base.replacedRows;
+            Map<Integer, int[]> replaced = base.replaced;
+            if (!removed.isEmpty() && removed.nextSetBit(0) < baseCount) {
+                holes = (BitSet) holes.clone();
+                for (int row = removed.nextSetBit(0); row >= 0 && row < baseCount; row = removed.nextSetBit(row + 1)) holes.set(row);
+            }
+            if (!replacedRanges.isEmpty() || holes != base.removed) {
+                replacedRows = (BitSet) replacedRows.clone();
+                replaced = new HashMap<>(replaced);
+                for (Map.Entry<Integer, int[]> e : replacedRanges.entrySet()) {
+                    int row = e.getKey();
+                    int[] r = {e.getValue()[0] + shift, e.getValue()[1] + shift};
+                    if (row < c.rows) {
+                        replaced.put(row, r);
+                        replacedRows.set(row);
+                    } else {
+                        starts[row - c.rows] = r[0];
+                        ends[row - c.rows] = r[1];
+                    }
+                }
+                // A removed row's new fibers are of no use any more
+                for (int row = holes.nextSetBit(0); row >= 0 && row < c.rows; row = holes.nextSetBit(row + 1)) {
+                    if (replacedRows.get(row)) {
+                        replacedRows.clear(row);
+                        replaced.remove(row);
+                    }
+                }
+            }
+            int row = c.rows + oldAdded;
+            for (int i = 0; i < addedNames.size(); i++) {
+                if (removed.get(baseCount + i)) continue;
+                int a = row - c.rows;
+                names[a] = addedNames.get(i).getBytes(StandardCharsets.UTF_8);
+                hashes[a] = addedNames.get(i).hashCode();
+                starts[a] = addedRanges.get(i)[0] + shift;
+                ends[a] = addedRanges.get(i)[1] + shift;
+                row++;
+            }
+            int[] holeRows = holes == base.removed ? base.holes : holes.stream().toArray();
+            YarnTable t = new YarnTable(c, holes, holeRows, replacedRows, replaced, names, hashes, starts, ends, ids, pcts);
+
+            // Names never change, so the widest one is the base's or one of the added ones
+            int w = base.widestRow;
+            if (w >= 0 && !holes.get(w)) {
+                for (int a = c.rows + oldAdded; a < t.rowCount; a++) {
+                    if (t.nameLength(a) > t.nameLength(w)) w = a;
+                }
+                t.widestRow = w;
+            }
+
+            // The base's index is updated for the touched rows rather than built again
+            FiberIndex idx = base.fiberIndex;
+            if (idx != null) {
+                BitSet touched = new BitSet();
+                for (int r = removed.nextSetBit(0); r >= 0 && r < baseCount; r = removed.nextSetBit(r + 1)) touched.set(r);
+                for (int r : replacedRanges.keySet()) touched.set(r);
+                touched.set(c.rows + oldAdded, t.rowCount);
+                t.fiberIndex = new FiberIndex(t, idx, touched);
+            }
+            return t;
+        }
+    }
+}
+
+// Inverted index of one YarnTable: for every fiber the rows containing it (ascending) with
+// their percentages, plus the lowest and highest percentage for a quick range check.
+// Queries combine the posting lists in a BitSet of rows, so their cost depends on the
+// lists involved rather than on the catalog size.
+//
+// The index of a table built on top of another one's columns is derived from the base
+// table's index: the posting lists stay shared, the rows the change touched are marked
+// stale there and get their postings from a small second set of lists instead.
+final class FiberIndex {
+    private static final int[] NONE = new int[0];
+
+    private final int rows;             // of the table, holes included
+    private final BitSet holes;         // the table's removed rows
+    private final int fibers;
+    private final int[] start, end;     // posting list of fiber f: [start[f], end[f]) for f < end.length
+    private final int[] postRows;
+    private final int[] postPercents;   // hundredths of a percent
+    private final BitSet stale;         // rows whose postings above are out of date
+    private final int[] moreStart;      // their current postings: [moreStart[f], moreStart[f + 1])
+    private final int[] moreRows, morePercents;
+    private final int[] minPercent, maxPercent;   // may be wider than the postings after a change
+
+    FiberIndex(YarnTable t) {
+        rows = t.rowCount();
+        holes = t.holes();
+        int total = 0, maxId = -1;
+        for (int row = holes.nextClearBit(0); row < rows; row = holes.nextClearBit(row + 1)) {
+            for (int k = t.fiberStart(row); k < t.fiberEnd(row); k++) maxId = Math.max(maxId, t.fiberId(k));
+            total += t.fiberEnd(row) - t.fiberStart(row);
+        }
+        fibers = maxId + 1;
+
+        start = new int[fibers + 1];
+        for (int row = holes.nextClearBit(0); row < rows; row = holes.nextClearBit(row + 1)) {
+            for (int k = t.fiberStart(row); k < t.fiberEnd(row); k++) start[t.fiberId(k) + 1]++;
+        }
+        for (int f = 0; f < fibers; f++) start[f + 1] += start[f];
+        end = Arrays.copyOf(start, fibers);
+        postRows = new int[total];
+        postPercents = new int[total];
+        for (int row = holes.nextClearBit(0); row < rows; row = holes.nextClearBit(row + 1)) {
+            for (int k = t.fiberStart(row); k < t.fiberEnd(row); k++) {
+                int f = t.fiberId(k), p = end[f];
+                // The same fiber listed twice in one yarn counts once, with the sum
+                if (p > start[f] && postRows[p - 1] == row) {
+                    postPercents[p - 1] += t.percentHundredths(k);
+                } else {
+                    postRows[p] = row;
+                    postPercents[p] = t.percentHundredths(k);
+                    end[f]++;
+                }
+            }
+        }
+        stale = new BitSet();
+        moreStart = new int[fibers + 1];
+        moreRows = morePercents = NONE;
+
+        minPercent = new int[fibers];
+        maxPercent = new int[fibers];
+        for (int f = 0; f < fibers; f++) {
+            int lo = Integer.MAX_VALUE, hi = Integer.MIN_VALUE;
+            for (int p = start[f]; p < end[f]; p++) {
+                lo = Math.min(lo, postPercents[p]);
+                hi = Math.max(hi, postPercents[p]);
+            }
+            minPercent[f] = lo;
+            maxPercent[f] = hi;
+        }
+    }
+
+    // Index of t, which YarnTable.Builder built on the table of prev (same columns, same
+    // row numbers); touched: the rows it added, removed or gave new fibers
+    FiberIndex(YarnTable t, FiberIndex prev, BitSet touched) {
+        rows = t.rowCount();
+        holes = t.holes();
+        start = prev.start;
+        end = prev.end;
+        postRows = prev.postRows;
+        postPercents = prev.postPercents;
+        stale = (BitSet) prev.stale.clone();
+        stale.or(touched);
+
+        // Postings of the stale rows: prev's for the rows not touched again, then the touched ones
+        int n = 0;
+        int[] fs = new int[16], rs = new int[16], ps = new int[16];
+        for (int f = 0; f < prev.fibers; f++) {
+            for (int p = prev.moreStart[f]; p < prev.moreStart[f + 1]; p++) {
+                if (touched.get(prev.moreRows[p])) continue;
+                if (n == fs.length) { fs = Arrays.copyOf(fs, n * 2); rs = Arrays.copyOf(rs, n * 2); ps = Arrays.copyOf(ps, n * 2); }
+                fs[n] = f;
+                rs[n] = prev.moreRows[p];
+                ps[n] = prev.morePercents[p];
+                n++;
+            }
+        }
+        int maxId = prev.fibers - 1;
+        for (int row = touched.nextSetBit(0); row >= 0; row = touched.nextSetBit(row + 1)) {
+            if (!t.isLive(row)) continue;
+            int first = n;
+            for (int k = t.fiberStart(row); k < t.fiberEnd(row); k++) {
+                int f = t.fiberId(k), at = first;
+                while (at < n && fs[at] != f) at++;
+                // The same fiber listed twice in one yarn counts once, with the sum
+                if (at < n) {
+                    ps[at] += t.percentHundredths(k);
+                    continue;
+                }
+                if (n == fs.length) { fs = Arrays.copyOf(fs, n * 2); rs = Arrays.copyOf(rs, n * 2); ps = Arrays.copyOf(ps, n * 2); }
+                fs[n] = f;
+                rs[n] = row;
+                ps[n] = t.percentHundredths(k);
+                n++;
+                maxId = Math.max(maxId, f);
+            }
+        }
+        fibers = maxId + 1;
+
+        moreStart = new int[fibers + 1];
+        for (int i = 0; i < n; i++) moreStart[fs[i] + 1]++;
+        for (int f = 0; f < fibers; f++) moreStart[f + 1] += moreStart[f];
+        int[] fill = Arrays.copyOf(moreStart, fibers);
+        moreRows = new int[n];
+        morePercents = new int[n];
+        for (int i = 0; i < n; i++) {
+            int p = fill[fs[i]]++;
+            moreRows[p] = rs[i];
+            morePercents[p] = ps[i];
+        }
+
+        // Bounds only grow; a removed extreme leaves them wider than needed, which costs a scan, not a wrong result
+        minPercent = Arrays.copyOf(prev.minPercent, fibers);
+        maxPercent = Arrays.copyOf(prev.maxPercent, fibers);
+        for (int f = prev.fibers; f < fibers; f++) {
+            minPercent[f] = Integer.MAX_VALUE;
+            maxPercent[f] = Integer.MIN_VALUE;
+        }
+        for (int i = 0; i < n; i++) {
+            minPercent[fs[i]] = Math.min(minPercent[fs[i]], ps[i]);
+            maxPercent[fs[i]] = Math.max(maxPercent[fs[i]], ps[i]);
+        }
+    }
+
+    // Rows of all yarns that satisfy every clause
+    BitSet query(Query q) {
+        int n = q.fibers.length;
+        int[] ids = new int[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = fiberId(q.fibers[i]);
+            order[i] = i;
+        }
+        // Clauses a yarn without the fiber fails come first, shortest posting list first
+        Arrays.sort(order, Comparator.comparing((Integer i) -> q.allowsZero(i)).thenComparingInt(i -> length(ids[i])));
+
+        BitSet res = null;   // null: still every row
+        for (int i : order) {
+            int f = ids[i], lo = q.lo[i], hi = q.hi[i];
+            if (!q.allowsZero(i)) {
+                BitSet next = new BitSet(rows);
+                if (f >= 0 && hi >= minPercent[f] && lo <= maxPercent[f]) {
+                    if (f < end.length) {
+                        for (int p = start[f]; p < end[f]; p++) {
+                            int row = postRows[p], pct = postPercents[p];
+                            if (pct >= lo && pct <= hi && (res == null || res.get(row)) && !stale.get(row)) next.set(row);
+                        }
+                    }
+                    for (int p = moreStart[f]; p < moreStart[f + 1]; p++) {
+                        int row = moreRows[p], pct = morePercents[p];
+                        if (pct >= lo && pct <= hi && (res == null || res.get(row))) next.set(row);
+                    }
+                }
+                res = next;
+                if (res.isEmpty()) return res;
+            } else {
+                if (res == null) res = allRows();
+                // Only yarns that contain the fiber outside the range drop out
+                if (f < 0 || (minPercent[f] >= lo && maxPercent[f] <= hi)) continue;
+                if (f < end.length) {
+                    for (int p = start[f]; p < end[f]; p++) {
+                        int pct = postPercents[p];
+                        if ((pct < lo || pct > hi) && !stale.get(postRows[p])) res.clear(postRows[p]);
+                    }
+                }
+                for (int p = moreStart[f]; p < moreStart[f + 1]; p++) {
+                    int pct = morePercents[p];
+                    if (pct < lo || pct > hi) res.clear(moreRows[p]);
+                }
+            }
+        }
+        return res == null ? allRows() : res;
+    }
+
+    private BitSet allRows() {
+        BitSet all = new BitSet(rows);
+        all.set(0, rows);
+        all.andNot(holes);
+        return all;
+    }
+
+    private int fiberId(String name) {
+        int id = FiberPool.find(name);
+        if (id < 0) id = FiberPool.find(GarnRechnerProzedural.normalizeName(name));
+        return id < fibers ? id : -1;
+    }
+
+    private int length(int f) {
+        if (f < 0) return 0;
+        return (f < end.length ? end[f] - start[f] : 0) + moreStart[f + 1] - moreStart[f];
+    }
+
+    // Fiber constraints that must all hold, separated by ';':
+    //   Seide      contains Seide          -Polyacryl  no Polyacryl
+    //   Baumwolle>=50, >50, <=50, <50, =50 (percent)
+    static final class Query {
+        final String[] fibers;
+        final int[] lo, hi;   // allowed range in hundredths
+
+        private Query(String[] fibers, int[] lo, int[] hi) { this.fibers = fibers; this.lo = lo; this.hi = hi; }
+
+        boolean allowsZero(int i) { return lo[i] <= 0 && hi[i] >= 0; }
+
+        // Throws IllegalArgumentException (with a message for the user) for an invalid clause
+        static Query parse(CharSequence text, Locale numbers) {
+            List<String> names = new ArrayList<>();
+            List<int[]> ranges = new ArrayList<>();
+            for (String clause : text.toString().split(";")) {
+                String c = clause.trim();
+                if (c.isEmpty()) continue;
+                int opAt = -1;
+                for (int i = 0; i < c.length() && opAt < 0; i++) {
+                    char ch = c.charAt(i);
+                    if (ch == '<' || ch == '>' || ch == '=') opAt = i;
+                }
+                String name;
+                int lo, hi;
+                if (opAt < 0) {
+                    boolean exclude = c.startsWith("-");
+                    name = (exclude ? c.substring(1) : c).trim();
+                    lo = exclude ? 0 : 1;
+                    hi = exclude ? 0 : Integer.MAX_VALUE;
+                } else {
+                    name = c.substring(0, opAt).trim();
+                    String op = c.length() > opAt + 1 && c.charAt(opAt + 1) == '=' ? c.substring(opAt, opAt + 2) : c.substring(opAt, opAt + 1);
+                    double v = Numbers.parse(c.substring(opAt + op.length()).trim(), numbers, Double.NaN);
+                    if (Double.isNaN(v) || v < 0 || v > 100) throw new IllegalArgumentException(String.format(Text.get("err_filter"), c));
+                    int x = (int) Math.round(v * 100.0);
+                    switch (op) {
+                        case ">=": lo = x; hi = Integer.MAX_VALUE; break;
+                        case ">":  lo = x + 1; hi = Integer.MAX_VALUE; break;
+                        case "<=": lo = Integer.MIN_VALUE; hi = x; break;
+                        case "<":  lo = Integer.MIN_VALUE; hi = x - 1; break;
+                        case "=": case "==": lo = x; hi = x; break;
+                        default: throw new IllegalArgumentException(String.format(Text.get("err_filter"), c));
+                    }
+                }
+                if (name.isEmpty()) throw new IllegalArgumentException(String.format(Text.get("err_filter"), c));
+                names.add(name);
+                ranges.add(new int[] { lo, hi });
+            }
+            int n = names.size();
+            int[] lo = new int[n], hi = new int[n];
+            for (int i = 0; i < n; i++) {
+                lo[i] = ranges.get(i)[0];
+                hi[i] = ranges.get(i)[1];
+            }
+            return new Query(names.toArray(new String[0]), lo, hi);
+        }
+    }
+}
+
+// Immutable, versioned state of the catalog. Readers (UI, batch jobs, searches)
+// just grab the current snapshot and never need a lock. A saved change shares the
+// previous table's columns and adds only the changed yarns (see YarnTable), so
+// publishing costs the change and older snapshots cost little more than their overlay.
+final class CatalogSnapshot {
+    static final CatalogSnapshot EMPTY = new CatalogSnapshot(0, YarnTable.EMPTY, Collections.emptySortedSet());
+
+    final long version;
+    final YarnTable yarns;
+    final SortedSet<String> fibers;
+
+    // Both parts are immutable; an unchanged part is shared with the previous version
+    private CatalogSnapshot(long version, YarnTable yarns, SortedSet<String> fibers) {
+        this.version = version;
+        this.yarns = yarns;
+        this.fibers = fibers;
+    }
+
+    CatalogSnapshot with(YarnTable nextYarns, Set<String> nextFibers) {
+        return new CatalogSnapshot(version + 1, nextYarns, Collections.unmodifiableSortedSet(new TreeSet<>(nextFibers)));
+    }
+
+    CatalogSnapshot withYarns(YarnTable next) {
+        return new CatalogSnapshot(version + 1, next, fibers);
+    }
+
+    CatalogSnapshot withFibers(Set<String> next) {
+        return new CatalogSnapshot(version + 1, yarns, Collections.unmodifiableSortedSet(new TreeSet<>(next)));
+    }
+}
+
+class Catalog {
+    private static final java.util.concurrent.atomic.AtomicReference<CatalogSnapshot> current =
+            new java.util.concurrent.atomic.AtomicReference<>(CatalogSnapshot.EMPTY);
+    // Serializes persisted changes within this JVM; the lock file does so across instances
+    private static final Object writeLock = new Object();
+    // Persisted changes are read, merged and written here, never on the EDT
+    private static final java.util.concurrent.ExecutorService writer = java.util.concurrent.Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "catalog-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static String yarnsFile = "yarns.json";
+    private static String fibersFile = "fibers.json";
+
+    static final class Commit {
+        final CatalogSnapshot before;
+        final CatalogSnapshot after;
+        final Set<String> ownYarns;                // yarns this process saved; empty for reloaded files
+        private final Set<String> yarnKeys;        // the only yarns that can differ; null: unknown
+        private CatalogDiff yarnDiff, fiberDiff;   // computed once, on first use
+
+        Commit(CatalogSnapshot before, CatalogSnapshot after, Set<String> yarnKeys, Set<String> ownYarns) {
+            this.before = before;
+            this.after = after;
+            this.yarnKeys = yarnKeys;
+            this.ownYarns = ownYarns;
+        }
+
+        // This change followed by the next one
+        Commit then(Commit next) {
+            Set<String> keys = null;
+            if (yarnKeys != null && next.yarnKeys != null) {
+                keys = new LinkedHashSet<>(yarnKeys);
+                keys.addAll(next.yarnKeys);
+            }
+            Set<String> own = ownYarns;
+            if (own.isEmpty()) own = next.ownYarns;
+            else if (!next.ownYarns.isEmpty()) {
+                own = new LinkedHashSet<>(ownYarns);
+                own.addAll(next.ownYarns);
+            }
+            return new Commit(before, next.after, keys, own);
+        }
+
+        // Only looks at the changed keys when they are known
+        synchronized CatalogDiff yarnDiff() {
+            if (yarnDiff == null) {
+                yarnDiff = yarnKeys != null ? CatalogDiff.ofYarns(before.yarns, after.yarns, yarnKeys)
+                        : CatalogDiff.ofYarns(before.yarns, after.yarns);
+            }
+            return yarnDiff;
+        }
+
+        synchronized CatalogDiff fiberDiff() {
+            if (fiberDiff == null) fiberDiff = CatalogDiff.ofFibers(before.fibers, after.fibers);
+            return fiberDiff;
+        }
+    }
+
+    static CatalogSnapshot snapshot() { return current.get(); }
+
+    static void load(String yarns, String fibers) {
+        yarnsFile = yarns;
+        fibersFile = fibers;
+        YarnTable y = DataLoader.loadYarnsFromFile(yarnsFile);
+        Set<String> f = DataLoader.loadFibersFromFile(fibersFile);
+        commit(s -> s.with(y, f));
+    }
+
+    // Publishes a new snapshot atomically; the change is re-applied if another commit won the race
+    static Commit commit(java.util.function.UnaryOperator<CatalogSnapshot> change) {
+        return commit(change, null, null, Collections.emptySet());
+    }
+
+    // yarnKeys: the yarns the change touched, relative to the table keysBase;
+    // ownYarns: the yarns this process saved with the change
+    private static Commit commit(java.util.function.UnaryOperator<CatalogSnapshot> change, YarnTable keysBase, Set<String> yarnKeys, Set<String> ownYarns) {
+        while (true) {
+            CatalogSnapshot before = current.get();
+            CatalogSnapshot after = change.apply(before);
+            // Filters query the index on the EDT, so a new table gets it before anyone can see it.
+            // A saved change brings one derived in build(); a reloaded file is indexed here, once.
+            if (after.yarns != before.yarns) after.yarns.fiberIndex();
+            if (current.compareAndSet(before, after)) {
+                Commit c = new Commit(before, after, before.yarns == keysBase ? yarnKeys : null, ownYarns);
+                if (before.yarns != after.yarns) {
+                    // A whole new table (file reloaded) is compared here rather than on the EDT;
+                    // the first load has nothing to compare against
+                    if (c.yarnKeys == null && !before.yarns.isEmpty()) c.yarnDiff();
+                    Events.post(Events.YARNS_CHANGED, c);
+                }
+                if (before.fibers != after.fibers) Events.post(Events.FIBERS_CHANGED, c);
+                return c;
+            }
+        }
+    }
+
+    // --- Persisted Changes ---
+    // Every change runs on the writer thread under the catalog lock. If another instance
+    // changed the file since we last read it, that version is loaded first and the change
+    // is applied on top of it: entries the change does not touch keep the other instance's
+    // version, for the touched ones the last writer wins.
+
+    static java.util.concurrent.CompletableFuture<Commit> putYarn(String name, List<FiberDef> defs) { return updateYarns(m -> m.put(name, defs)); }
+    static java.util.concurrent.CompletableFuture<Commit> removeYarn(String name) { return updateYarns(m -> m.remove(name)); }
+    static java.util.concurrent.CompletableFuture<Commit> addFiber(String name) { return updateFibers(f -> f.add(name)); }
+    static java.util.concurrent.CompletableFuture<Commit> removeFiber(String name) { return updateFibers(f -> f.remove(name)); }
+
+    static java.util.concurrent.CompletableFuture<Commit> updateYarns(java.util.function.Consumer<YarnTable.Builder> change) {
+        return persist(yarnsFile, () -> {
+            if (DataLoader.hasChangedOnDisk(yarnsFile)) {
+                YarnTable disk = DataLoader.loadYarnsFromFile(yarnsFile);
+                commit(s -> s.withYarns(disk));
+            }
+            YarnTable base = snapshot().yarns;
+            YarnTable.Builder b = new YarnTable.Builder(base);
+            change.accept(b);
+            YarnTable next = b.build();
+            // Published only once the file is written, so memory never gets ahead of the disk
+            try {
+                DataLoader.saveYarnsToFile(next, yarnsFile);
+            } catch (IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+            Set<String> changed = b.changedNames();
+            return commit(s -> s.withYarns(next), base, changed, changed);
+        });
+    }
+
+    static java.util.concurrent.CompletableFuture<Commit> updateFibers(java.util.function.Consumer<Set<String>> change) {
+        return persist(fibersFile, () -> {
+            if (DataLoader.hasChangedOnDisk(fibersFile)) {
+                Set<String> disk = DataLoader.loadFibersFromFile(fibersFile);
+                commit(s -> s.withFibers(disk));
+            }
+            Set<String> next = new TreeSet<>(snapshot().fibers);
+            change.accept(next);
+            try {
+                DataLoader.saveFibersToFile(next, fibersFile);
+            } catch (IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+            return commit(s -> s.withFibers(next));
+        });
+    }
+
+    // Completes exceptionally if the change could not be saved; callers report that to the user
+    private static java.util.concurrent.CompletableFuture<Commit> persist(String file, java.util.function.Supplier<Commit> task) {
+        return java.util.concurrent.CompletableFuture.supplyAsync(() -> {
+            synchronized (writeLock) {
+                Commit[] res = new Commit[1];
+                try {
+                    DataLoader.withCatalogLock(file, () -> res[0] = task.get());
+                } catch (IOException e) {
+                    throw new java.io.UncheckedIOException(e);
+                }
+                return res[0];
+            }
+        }, writer);
+    }
+
+    // Called by the watcher with a catalog file another instance has written
+    static void onExternalChange(String file, String json, long checksum, long basis) {
+        synchronized (writeLock) {
+            // A save in the meantime has already merged a newer version of the file
+            if (DataLoader.knownChecksum(file) != basis) return;
+            DataLoader.markKnown(file, checksum);
+            if (file.equals(yarnsFile)) {
+                YarnTable y = DataLoader.parseYarns(json);
+                commit(s -> s.withYarns(y));
+            } else if (file.equals(fibersFile)) {
+                Set<String> f = DataLoader.parseFibers(json);
+                commit(s -> s.withFibers(f));
+            }
+        }
+    }
+}
+
+// --- Catalog Sync ---
+
+class CatalogDiff {
+    final Set<String> added = new LinkedHashSet<>();
+    final Set<String> removed = new LinkedHashSet<>();
+    final Set<String> updated = new LinkedHashSet<>();
+
+    boolean isEmpty() { return added.isEmpty() && removed.isEmpty() && updated.isEmpty(); }
+
+    // Compares whole tables on the columns; only names of differing yarns are decoded
+    static CatalogDiff ofYarns(YarnTable before, YarnTable after) {
+        CatalogDiff d = new CatalogDiff();
+        for (int row = 0; row < before.rowCount(); row++) {
+            if (before.isLive(row) && after.indexOf(before, row) < 0) d.removed.add(before.name(row));
+        }
+        for (int row = 0; row < after.rowCount(); row++) {
+            if (!after.isLive(row)) continue;
+            int old = before.indexOf(after, row);
+            if (old < 0) d.added.add(after.name(row));
+            else if (!before.sameFibers(old, after, row)) d.updated.add(after.name(row));
+        }
+        return d;
+    }
+
+    // Only the given names can differ (e.g. the keys a YarnTable.Builder touched)
+    static CatalogDiff ofYarns(YarnTable before, YarnTable after, Collection<String> names) {
+        CatalogDiff d = new CatalogDiff();
+        for (String name : names) {
+            int old = before.indexOf(name), now = after.indexOf(name);
+            if (old < 0 && now >= 0) d.added.add(name);
+            else if (old >= 0 && now < 0) d.removed.add(name);
+            else if (old >= 0 && !before.sameFibers(old, after, now)) d.updated.add(name);
+        }
+        return d;
+    }
+
+    static CatalogDiff ofFibers(Set<String> before, Set<String> after) {
+        CatalogDiff d = new CatalogDiff();
+        for (String f : before) if (!after.contains(f)) d.removed.add(f);
+        for (String f : after) if (!before.contains(f)) d.added.add(f);
+        return d;
+    }
+
+    static boolean sameFibers(List<FiberDef> a, List<FiberDef> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (!a.get(i).name.equals(b.get(i).name) || Double.compare(a.get(i).percentage, b.get(i).percentage) != 0) return false;
+        }
+        return true;
+    }
+}
+
+// Watches the catalog files for changes made by other instances sharing the directory.
+class CatalogWatcher implements Runnable {
+    private static final long SETTLE_MS = 150;
+    private final Set<String> files;
+
+    private CatalogWatcher(Set<String> files) { this.files = files; }
+
+    static void start(String... files) {
+        Thread t = new Thread(new CatalogWatcher(new HashSet<>(Arrays.asList(files))), "catalog-watcher");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @Override
+    public void run() {
+        java.nio.file.Path dir = new File(".").getAbsoluteFile().toPath().normalize();
+        try (java.nio.file.WatchService ws = dir.getFileSystem().newWatchService()) {
+            dir.register(ws, java.nio.file.StandardWatchEventKinds.ENTRY_CREATE, java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY);
+            while (true) {
+                java.nio.file.WatchKey key = ws.take();
+                Set<String> changed = new LinkedHashSet<>();
+                // Collect bursts of events (editors often write in several steps)
+                do {
+                    for (java.nio.file.WatchEvent<?> ev : key.pollEvents()) {
+                        String name = String.valueOf(ev.context());
+                        if (files.contains(name)) changed.add(name);
+                    }
+                    key.reset();
+                    key = ws.poll(SETTLE_MS, java.util.concurrent.TimeUnit.MILLISECONDS);
+                } while (key != null);
+
+                for (String f : changed) reload(f);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Only the changed file is re-read, and only if its content differs from what we know
+    private void reload(String file) throws InterruptedException {
+        long basis = DataLoader.knownChecksum(file);
+        byte[] bytes = DataLoader.readBytes(file);
+        if (bytes == null || DataLoader.checksum(bytes) == basis) return;
+
+        // Wait until the content is stable in case a writer is still busy
+        byte[] again;
+        while (!Arrays.equals(bytes, again = DataLoader.readBytes(file))) {
+            if (again == null) return;
+            bytes = again;
+            Thread.sleep(SETTLE_MS);
+        }
+
+        String json = new String(bytes, StandardCharsets.UTF_8);
+        long checksum = DataLoader.checksum(bytes);
+        Catalog.onExternalChange(file, json, checksum, basis);
+    }
+}
+
+// --- Bulk Import ---
+
+// Imports supplier catalogs (CSV or yarns.json format) into the yarn catalog.
+// The source is read in chunks, each chunk is parsed and validated in parallel and its
+// accepted yarns are moved into a compact staging table; the staged yarns are committed
+// and saved in one batch at the end.
+class CatalogImporter {
+    enum MergePolicy { KEEP_EXISTING, OVERWRITE }
+
+    static final int CHUNK_SIZE = 10_000;
+    static final int MAX_LISTED_REJECTS = 20;
+
+    static class Report {
+        long read, rejected;              // records
+        long added, updated, skipped;     // yarn names, each counted once by its state before the import
+        final List<String> firstRejects = new ArrayList<>();
+        File rejectFile;
+    }
+
+    // Either a valid yarn or a reject reason
+    private static class Parsed {
+        final long recordNo;
+        final String name;
+        final List<FiberDef> fibers;
+        final String error;
+
+        Parsed(long recordNo, String name, List<FiberDef> fibers, String error) {
+            this.recordNo = recordNo; this.name = name; this.fibers = fibers; this.error = error;
+        }
+    }
+
+    private interface RecordSource extends java.io.Closeable {
+        // Raw records, at most max; empty at the end of the input
+        List<String> nextChunk(int max) throws IOException;
+        Parsed parse(String record, long recordNo, Set<String> knownFibers);
+    }
+
+    static Report importFile(File f, MergePolicy policy) throws IOException {
+        Set<String> knownFibers = Catalog.snapshot().fibers;
+        YarnTable staged = YarnTable.EMPTY;
+        Report report = new Report();
+        report.rejectFile = new File(f.getPath() + ".rejects.txt");
+
+        boolean json = f.getName().toLowerCase(Locale.ROOT).endsWith(".json");
+        java.io.BufferedReader in = Files.newBufferedReader(f.toPath(), StandardCharsets.UTF_8);
+        try (RecordSource src = json ? new JsonSource(in) : new CsvSource(in);
+             java.io.BufferedWriter rejects = Files.newBufferedWriter(report.rejectFile.toPath(), StandardCharsets.UTF_8)) {
+
+            List<String> chunk;
+            while (!(chunk = src.nextChunk(CHUNK_SIZE)).isEmpty()) {
+                long base = report.read;
+                List<String> records = chunk;
+                List<Parsed> parsed = java.util.stream.IntStream.range(0, records.size()).parallel()
+                        .mapToObj(i -> src.parse(records.get(i), base + i + 1, knownFibers))
+                        .collect(java.util.stream.Collectors.toList());
+                report.read += records.size();
+
+                // A name repeated within the file: the first one wins (KEEP_EXISTING) or the last one
+                // (OVERWRITE). Repeats are not counted, the name is counted once at commit.
+                YarnTable.Builder chunkYarns = new YarnTable.Builder(staged);
+                for (Parsed p : parsed) {
+                    if (p.error != null) {
+                        String line = String.format(Text.get("import_reject_line"), p.recordNo, p.name == null ? "" : p.name, p.error);
+                        rejects.write(line);
+                        rejects.newLine();
+                        if (report.firstRejects.size() < MAX_LISTED_REJECTS) report.firstRejects.add(line);
+                        report.rejected++;
+                    } else if (policy == MergePolicy.OVERWRITE || !chunkYarns.containsKey(p.name)) {
+                        chunkYarns.put(p.name, p.fibers);
+                    }
+                }
+                staged = chunkYarns.build();
+            }
+        }
+        if (report.rejected == 0) {
+            Files.deleteIfExists(report.rejectFile.toPath());
+            report.rejectFile = null;
+        }
+
+        if (!staged.isEmpty()) {
+            YarnTable accepted = staged;
+            // Waits for the writer thread, the counts are filled in there
+            Catalog.updateYarns(m -> {
+                for (int row = 0; row < accepted.rowCount(); row++) {
+                    if (!accepted.isLive(row)) continue;
+                    if (!m.containsKey(accepted.name(row))) {
+                        report.added++;
+                    } else if (policy == MergePolicy.OVERWRITE) {
+                        report.updated++;
+                    } else {
+                        report.skipped++;
+                        continue;
+                    }
+                    m.put(accepted, row);
+                }
+            }).join();
+        }
+        return report;
+    }
+
+    // Issue buffers are reused per parsing thread
+    private static final ThreadLocal<ValidationIssues> ISSUES = ThreadLocal.withInitial(ValidationIssues::new);
+
+    // Shared validation for both formats; a reject lists every issue of the record
+    private static Parsed validate(long recordNo, String name, List<FiberDef> fibers, Set<String> knownFibers) {
+        if (name == null || name.isEmpty()) return new Parsed(recordNo, name, null, Text.get("rej_no_name"));
+        ValidationIssues issues = ISSUES.get();
+        issues.clear();
+        if (Validator.checkYarn(0, 0.0, fibers, knownFibers, issues)) {
+            return new Parsed(recordNo, name, Collections.unmodifiableList(fibers), null);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < issues.size(); i++) {
+            if (i > 0) sb.append("; ");
+            sb.append(issues.detail(i));
+        }
+        return new Parsed(recordNo, name, null, sb.toString());
+    }
+
+    // name;fiber;percent;fiber;percent... (',' instead of ';' is accepted, optional header line)
+    private static class CsvSource implements RecordSource {
+        private final java.io.BufferedReader in;
+        private char sep;
+        private boolean first = true;
+
+        CsvSource(java.io.BufferedReader in) { this.in = in; }
+
+        @Override
+        public List<String> nextChunk(int max) throws IOException {
+            List<String> res = new ArrayList<>();
+            String line;
+            while (res.size() < max && (line = in.readLine()) != null) {
+                if (first) {
+                    first = false;
+                    if (!line.isEmpty() && line.charAt(0) == '﻿') line = line.substring(1);
+                    sep = line.indexOf(';') >= 0 ? ';' : ',';
+                    if (line.toLowerCase(Locale.ROOT).startsWith("name")) continue;
+                }
+                if (!line.trim().isEmpty()) res.add(line);
+            }
+            return res;
+        }
+
+        @Override
+        public Parsed parse(String record, long recordNo, Set<String> knownFibers) {
+            List<String> cells = splitCsv(record, sep);
+            String name = cells.get(0).trim();
+            List<FiberDef> fibers = new ArrayList<>();
+            for (int i = 1; i < cells.size(); i += 2) {
+                String fiber = cells.get(i).trim();
+                String pct = i + 1 < cells.size() ? cells.get(i + 1).trim() : "";
+                if (fiber.isEmpty() && pct.isEmpty()) continue;
+                // Invalid numbers become NaN and are reported by validate()
+                fibers.add(new FiberDef(fiber, Numbers.parseDecimal(pct, Double.NaN)));
+            }
+            return validate(recordNo, name, fibers, knownFibers);
+        }
+
+        private static List<String> splitCsv(String line, char sep) {
+            List<String> cells = new ArrayList<>();
+            StringBuilder b = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == '"') {
+                    if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') { b.append('"'); i++; }
+                    else quoted = !quoted;
+                } else if (c == sep && !quoted) {
+                    cells.add(b.toString());
+                    b.setLength(0);
+                } else {
+                    b.append(c);
+                }
+            }
+            cells.add(b.toString());
+            return cells;
+        }
+
+        @Override
+        public void close() throws IOException { in.close(); }
+    }
+
+    // Same layout as yarns.json; top-level entries are cut out while streaming
+    private static class JsonSource implements RecordSource {
+        private final java.io.BufferedReader in;
+        private int depth = 0;
+        private boolean done = false;
+
+        JsonSource(java.io.BufferedReader in) { this.in = in; }
+
+        @Override
+        public List<String> nextChunk(int max) throws IOException {
+            List<String> res = new ArrayList<>();
+            StringBuilder b = new StringBuilder();
+            boolean quoted = false, escaped = false;
+            int c;
+            while (!done && res.size() < max && (c = in.read()) >= 0) {
+                char ch = (char) c;
+                if (quoted) {
+                    if (escaped) escaped = false;
+                    else if (ch == '\\') escaped = true;
+                    else if (ch == '"') quoted = false;
+                } else if (ch == '"') {
+                    quoted = true;
+                } else if (ch == '{') {
+                    if (++depth == 1) continue;
+                } else if (ch == '}') {
+                    if (--depth == 0) {
+                        done = true;
+                        addRecord(res, b);
+                        continue;
+                    }
+                } else if (ch == ',' && depth == 1) {
+                    addRecord(res, b);
+                    continue;
+                }
+                if (depth >= 1) b.append(ch);
+            }
+            // A chunk never ends inside a record: records are only cut at top-level commas
+            return res;
+        }
+
+        private static void addRecord(List<String> res, StringBuilder b) {
+            String r = b.toString().trim();
+            if (!r.isEmpty()) res.add(r);
+            b.setLength(0);
+        }
+
+        @Override
+        public Parsed parse(String record, long recordNo, Set<String> knownFibers) {
+            Map.Entry<String, List<FiberDef>> e = DataLoader.parseYarnEntry(record);
+            if (e == null) return new Parsed(recordNo, null, null, Text.get("rej_no_name"));
+            return validate(recordNo, e.getKey(), new ArrayList<>(e.getValue()), knownFibers);
+        }
+
+        @Override
+        public void close() throws IOException { in.close(); }
+    }
+}
+
+// --- Batch Composition ---
+
+// Evaluates many recipes at once. A recipe is a row of grams per yarn; each yarn is a
+// dense row of fiber fractions (p / 100). The result is the percentage of each fiber
+// in the recipe's total weight, i.e. the exact values calculateTotals rounds.
+interface CompositionKernel {
+    // Recipes are the lanes: grams[y * recipes + r] (yarns x recipes), fractions[y * fibers + f]
+    // (yarns x fibers, e.g. a CompositionKernels.Layout), out[f * recipes + r] (fibers x
+    // recipes), all percentages of the recipe's total. Consecutive recipes are contiguous,
+    // so a SIMD kernel works on a whole vector of recipes at once whatever the fiber count.
+    void evaluate(double[] grams, int recipes, int yarns, double[] fractions, int fibers, double[] out);
+    String name();
+}
+
+final class ScalarCompositionKernel implements CompositionKernel {
+    static final int BLOCK = 1024;   // recipes per pass, so the rows stay in the cache
+
+    @Override
+    public void evaluate(double[] grams, int recipes, int yarns, double[] fractions, int fibers, double[] out) {
+        for (int from = 0; from < recipes; from += BLOCK) {
+            int to = Math.min(recipes, from + BLOCK);
+            for (int f = 0; f < fibers; f++) Arrays.fill(out, f * recipes + from, f * recipes + to, 0.0);
+            for (int y = 0; y < yarns; y++) {
+                int g = y * recipes;
+                for (int f = 0; f < fibers; f++) {
+                    double frac = fractions[y * fibers + f];
+                    if (frac == 0.0) continue;   // a yarn has only a few of the fibers
+                    int o = f * recipes;
+                    for (int r = from; r < to; r++) out[o + r] += frac * grams[g + r];
+                }
+            }
+            for (int r = from; r < to; r++) {
+                double total = 0.0;
+                for (int y = 0; y < yarns; y++) total += grams[y * recipes + r];
+                double scale = total > 0.0 ? 100.0 / total : 0.0;
+                for (int f = 0; f < fibers; f++) out[f * recipes + r] *= scale;
+            }
+        }
+    }
+
+    @Override public String name() { return "scalar"; }
+}
+
+final class CompositionKernels {
+    private static CompositionKernel best;
+
+    // The Vector API kernel lives in VectorCompositionKernel.java and only loads when it
+    // was compiled and the JVM runs with --add-modules jdk.incubator.vector. It uses no
+    // types of this file (they are not visible outside it without -Xlint warnings), so it
+    // is called through a method handle and gets the block size as an argument.
+    static synchronized CompositionKernel best() {
+        if (best == null) {
+            try {
+                best = vectorKernel();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                best = new ScalarCompositionKernel();
+            }
+        }
+        return best;
+    }
+
+    private static CompositionKernel vectorKernel() throws ReflectiveOperationException {
+        Class<?> type = Class.forName("VectorCompositionKernel");
+        Object kernel = type.getDeclaredConstructor().newInstance();
+        java.lang.invoke.MethodHandle evaluate = java.lang.invoke.MethodHandles.publicLookup().findVirtual(type, "evaluate",
+                java.lang.invoke.MethodType.methodType(void.class, double[].class, int.class, int.class, double[].class, int.class, double[].class, int.class))
+                .bindTo(kernel);
+        String name = (String) type.getMethod("name").invoke(kernel);
+        return new CompositionKernel() {
+            @Override
+            public void evaluate(double[] grams, int recipes, int yarns, double[] fractions, int fibers, double[] out) {
+                try {
+                    evaluate.invokeExact(grams, recipes, yarns, fractions, fibers, out, ScalarCompositionKernel.BLOCK);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override public String name() { return name; }
+        };
+    }
+
+    // Dense fraction matrix for the given catalog rows. Only fibers that occur get a
+    // column; fiberIds maps the columns back to FiberPool IDs.
+    static final class Layout {
+        final int yarns;
+        final int fibers;
+        final int[] fiberIds;
+        final double[] fractions;
+
+        Layout(YarnTable table, int[] rows) {
+            Map<Integer, Integer> columns = new LinkedHashMap<>();
+            for (int row : rows) {
+                for (int k = table.fiberStart(row); k < table.fiberEnd(row); k++) {
+                    columns.putIfAbsent(table.fiberId(k), columns.size());
+                }
+            }
+            yarns = rows.length;
+            fibers = columns.size();
+            fiberIds = new int[fibers];
+            for (Map.Entry<Integer, Integer> e : columns.entrySet()) fiberIds[e.getValue()] = e.getKey();
+            fractions = new double[yarns * fibers];
+            for (int y = 0; y < yarns; y++) {
+                for (int k = table.fiberStart(rows[y]); k < table.fiberEnd(rows[y]); k++) {
+                    fractions[y * fibers + columns.get(table.fiberId(k))] += table.percentHundredths(k) / 10000.0;
+                }
+            }
+        }
+    }
+
+    // Compares the scalar kernel with best() (--bench-kernel) on recipes made of catalog
+    // yarns with 2-6 fibers each, as real yarns have
+    static void benchmark() {
+        int recipes = 200_000, rounds = 10;
+        String[] names = {"Baumwolle", "Schurwolle", "Merino", "Kaschmir", "Alpaka", "Mohair", "Seide",
+                "Leinen", "Viskose", "Polyamid", "Polyacryl", "Elasthan"};
+        Random rnd = new Random(42);
+        YarnTable.Builder b = new YarnTable.Builder(YarnTable.EMPTY);
+        for (int i = 0; i < 1000; i++) {
+            List<String> pick = new ArrayList<>(Arrays.asList(names));
+            Collections.shuffle(pick, rnd);
+            int n = 2 + rnd.nextInt(5), left = 100;
+            List<FiberDef> fibers = new ArrayList<>(n);
+            for (int k = 0; k < n; k++) {
+                int p = k == n - 1 ? left : 1 + rnd.nextInt(left - (n - 1 - k));
+                fibers.add(new FiberDef(pick.get(k), p));
+                left -= p;
+            }
+            b.put("Garn " + i, fibers);
+        }
+        YarnTable table = b.build();
+
+        CompositionKernel scalar = new ScalarCompositionKernel();
+        CompositionKernel vector = best();
+        for (int yarns : new int[] {2, 4, 8}) {
+            int[] rows = new int[yarns];
+            for (int y = 0; y < yarns; y++) rows[y] = table.row(rnd.nextInt(table.size()));
+            Layout layout = new Layout(table, rows);
+            double[] grams = new double[yarns * recipes];
+            for (int i = 0; i < grams.length; i++) grams[i] = rnd.nextInt(4) == 0 ? 0.0 : rnd.nextInt(500);
+
+            double[] expected = new double[recipes * layout.fibers];
+            double[] out = new double[recipes * layout.fibers];
+            for (CompositionKernel k : new CompositionKernel[]{scalar, vector}) {
+                double[] target = k == scalar ? expected : out;
+                for (int i = 0; i < 3; i++) k.evaluate(grams, recipes, yarns, layout.fractions, layout.fibers, target); // warm-up
+                long t = System.nanoTime();
+                for (int i = 0; i < rounds; i++) k.evaluate(grams, recipes, yarns, layout.fractions, layout.fibers, target);
+                double secs = (System.nanoTime() - t) / 1e9;
+                System.out.printf(Locale.ROOT, "%-8s %8.1f M recipes/s (%d yarns, %d fibers)%n", k.name(), recipes * (double) rounds / secs / 1e6, yarns, layout.fibers);
+            }
+            double maxDiff = 0.0;
+            for (int i = 0; i < out.length; i++) maxDiff = Math.max(maxDiff, Math.abs(out[i] - expected[i]));
+            System.out.printf(Locale.ROOT, "max difference to scalar: %.2e%n", maxDiff);
+        }
+    }
+}
+
+// --- What-if Sweep ---
+
+// Varies the grams of one or two yarns of a project over a grid and evaluates the
+// rounded composition for every grid point in parallel.
+class GramSweep {
+    static final int MAX_POINTS = 4_000_000;
+    static final long MAX_CELLS = 24_000_000L;   // points x fibers, 4 bytes each while running
+    private static final int BLOCK = 4096;
+
+    static final class Axis {
+        final int yarn;
+        final double from, to;
+        final int steps;
+
+        Axis(int yarn, double from, double to, int steps) {
+            if (steps < 2) throw new IllegalArgumentException("steps");
+            this.yarn = yarn; this.from = from; this.to = to; this.steps = steps;
+        }
+
+        double value(int i) { return from + (to - from) * i / (steps - 1); }
+    }
+
+    static final class Result {
+        final String[] fibers;
+        final Axis x, y;          // y is null for a one-dimensional sweep
+        final short[] tenths;     // point-major: tenths[point * fibers.length + fiber]
+        final BitSet boundary;    // a whole percent on the label differs from the previous point in x or y
+        final double baseGrams;   // total grams of the yarns that are not varied
+        final long millis;
+
+        Result(String[] fibers, Axis x, Axis y, short[] tenths, BitSet boundary, double baseGrams, long millis) {
+            this.fibers = fibers; this.x = x; this.y = y; this.tenths = tenths; this.boundary = boundary;
+            this.baseGrams = baseGrams; this.millis = millis;
+        }
+
+        int nx() { return x.steps; }
+        int ny() { return y == null ? 1 : y.steps; }
+        int points() { return nx() * ny(); }
+        int tenths(int point, int fiber) { return tenths[point * fibers.length + fiber]; }
+    }
+
+    // Fiber columns by normalized name, in order of first appearance (like calculateTotals)
+    private static Map<String, Integer> columns(List<ProjectYarn> project) {
+        Map<String, Integer> columns = new LinkedHashMap<>();
+        for (ProjectYarn py : project) {
+            for (FiberDef fd : py.fibers) columns.putIfAbsent(GarnRechnerProzedural.normalizeName(fd.name), columns.size());
+        }
+        return columns;
+    }
+
+    // Grid and result size within the limits (counted in long, so huge step counts cannot wrap)
+    static boolean fits(List<ProjectYarn> project, Axis x, Axis y) {
+        long points = (long) x.steps * (y == null ? 1 : y.steps);
+        return points <= MAX_POINTS && points * columns(project).size() <= MAX_CELLS;
+    }
+
+    static Result run(List<ProjectYarn> project, Axis x, Axis y) {
+        long start = System.nanoTime();
+        if (!fits(project, x, y)) throw new IllegalArgumentException("Sweep too large");
+
+        Map<String, Integer> columns = columns(project);
+        int yarns = project.size(), fibers = columns.size();
+        double[] fractions = new double[yarns * fibers];
+        double[] baseGrams = new double[yarns];
+        for (int i = 0; i < yarns; i++) {
+            ProjectYarn py = project.get(i);
+            baseGrams[i] = py.grams;
+            for (FiberDef fd : py.fibers) fractions[i * fibers + columns.get(GarnRechnerProzedural.normalizeName(fd.name))] += fd.percentage / 100.0;
+        }
+
+        int nx = x.steps, ny = y == null ? 1 : y.steps, points = nx * ny;
+        short[] tenths = new short[points * fibers];
+        short[] percents = new short[points * fibers];   // the label's whole percents, only for the boundaries
+        CompositionKernel kernel = CompositionKernels.best();
+
+        java.util.stream.IntStream.range(0, (points + BLOCK - 1) / BLOCK).parallel().forEach(b -> {
+            int from = b * BLOCK, n = Math.min(points, from + BLOCK) - from;
+            double[] grams = new double[yarns * n];     // kernel layout: yarn-major, points are the lanes
+            double[] shares = new double[fibers * n];   // fiber-major
+            double[] recipe = new double[fibers];
+            double[] rem = new double[fibers];
+            long[] units = new long[fibers];
+            for (int k = 0; k < yarns; k++) Arrays.fill(grams, k * n, (k + 1) * n, baseGrams[k]);
+            for (int i = 0; i < n; i++) {
+                int p = from + i;
+                grams[x.yarn * n + i] = x.value(p % nx);
+                if (y != null) grams[y.yarn * n + i] = y.value(p / nx);
+            }
+            kernel.evaluate(grams, n, yarns, fractions, fibers, shares);
+            for (int i = 0; i < n; i++) {
+                for (int f = 0; f < fibers; f++) recipe[f] = shares[f * n + i];
+                Composition.roundShares(recipe, 0, fibers, 1000, tenths, (from + i) * fibers, units, rem);
+                Composition.roundShares(recipe, 0, fibers, 100, percents, (from + i) * fibers, units, rem);
+            }
+        });
+
+        // A tenth that moves without changing a whole percent is no label change
+        BitSet boundary = new BitSet(points);
+        for (int p = 0; p < points; p++) {
+            int ix = p % nx;
+            if ((ix > 0 && differs(percents, p, p - 1, fibers)) || (p >= nx && differs(percents, p, p - nx, fibers))) boundary.set(p);
+        }
+
+        double fixed = 0.0;
+        for (int i = 0; i < yarns; i++) if (i != x.yarn && (y == null || i != y.yarn)) fixed += baseGrams[i];
+
+        String[] names = columns.keySet().toArray(new String[0]);
+        return new Result(names, x, y, tenths, boundary, fixed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // One recipe per grid point, labelled with the grams of the varied yarns
+    static void export(Result r, String[] yarnNames, ResultWriter w) throws IOException {
+        StringBuilder label = new StringBuilder();
+        int nx = r.nx();
+        for (int p = 0; p < r.points(); p++) {
+            double gx = r.x.value(p % nx);
+            label.setLength(0);
+            label.append(yarnNames[r.x.yarn]).append(' ');
+            w.appendNumber(label, gx, 2);
+            label.append(" g");
+            double total = r.baseGrams + gx;
+            if (r.y != null) {
+                double gy = r.y.value(p / nx);
+                label.append(" / ").append(yarnNames[r.y.yarn]).append(' ');
+                w.appendNumber(label, gy, 2);
+                label.append(" g");
+                total += gy;
+            }
+            w.beginRecipe(label, total);
+            for (int f = 0; f < r.fibers.length; f++) w.share(r.fibers[f], r.tenths(p, f));
+            w.endRecipe();
+        }
+    }
+
+    private static boolean differs(short[] units, int a, int b, int fibers) {
+        for (int f = 0; f < fibers; f++) if (units[a * fibers + f] != units[b * fibers + f]) return true;
+        return false;
+    }
+}
+
+// Curves (one yarn varied) or a heatmap of one fiber (two yarns varied); points where
+// a rounded share flips are marked.
+class SweepChart extends JComponent {
+    private static final long serialVersionUID = 1L;
+    private static final Color[] PALETTE = {
+        new Color(31, 119, 180), new Color(255, 127, 14), new Color(44, 160, 44), new Color(214, 39, 40),
+        new Color(148, 103, 189), new Color(140, 86, 75), new Color(227, 119, 194), new Color(127, 127, 127)
+    };
+    private static final int LEFT = 60, RIGHT = 170, TOP = 15, BOTTOM = 45;
+
+    private final GramSweep.Result r;
+    private final String[] yarnNames;
+    private int heatFiber = 0;
+    private java.awt.image.BufferedImage heat;
+
+    SweepChart(GramSweep.Result r, String[] yarnNames) {
+        this.r = r;
+        this.yarnNames = yarnNames;
+        setToolTipText("");
+        setBackground(Color.WHITE);
+        setOpaque(true);
+    }
+
+    void setHeatFiber(int f) {
+        heatFiber = f;
+        heat = null;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g0) {
+        Graphics2D g = (Graphics2D) g0.create();
+        g.setColor(getBackground());
+        g.fillRect(0, 0, getWidth(), getHeight());
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        int w = plotWidth(), h = plotHeight();
+        if (w <= 1 || h <= 1) return;
+
+        if (r.y == null) paintCurves(g, w, h);
+        else paintHeatmap(g, w, h);
+
+        // Axes
+        g.setColor(Color.BLACK);
+        g.drawRect(LEFT, TOP, w, h);
+        g.drawString(Numbers.format(r.x.from, 1), LEFT, TOP + h + 15);
+        String xMax = Numbers.format(r.x.to, 1);
+        g.drawString(xMax, LEFT + w - g.getFontMetrics().stringWidth(xMax), TOP + h + 15);
+        g.drawString(yarnNames[r.x.yarn] + " (g)", LEFT + w / 2 - 30, TOP + h + 32);
+        String yLabel = r.y == null ? Text.get("sweep_axis_share") : yarnNames[r.y.yarn] + " (g)";
+        g.drawString(r.y == null ? "100" : Numbers.format(r.y.to, 0), 5, TOP + 10);
+        g.drawString(r.y == null ? "0" : Numbers.format(r.y.from, 0), 5, TOP + h);
+        g.drawString(yLabel, 5, TOP + h / 2);
+        g.dispose();
+    }
+
+    private void paintCurves(Graphics2D g, int w, int h) {
+        int nx = r.nx();
+        // Label changes as light red lines, at most one per pixel column
+        g.setColor(new Color(255, 0, 0, 60));
+        int lastPx = -1;
+        for (int p = r.boundary.nextSetBit(0); p >= 0; p = r.boundary.nextSetBit(p + 1)) {
+            int px = LEFT + (int) ((long) p * w / Math.max(1, nx - 1));
+            if (px != lastPx) g.drawLine(px, TOP, px, TOP + h);
+            lastPx = px;
+        }
+        for (int f = 0; f < r.fibers.length; f++) {
+            g.setColor(PALETTE[f % PALETTE.length]);
+            int prevX = -1, prevY = -1;
+            for (int px = 0; px <= w; px++) {
+                int p = (int) ((long) px * (nx - 1) / w);
+                int py = TOP + h - r.tenths(p, f) * h / 1000;
+                if (prevX >= 0) g.drawLine(prevX, prevY, LEFT + px, py);
+                prevX = LEFT + px;
+                prevY = py;
+            }
+            g.fillRect(LEFT + w + 15, TOP + 10 + f * 18, 10, 10);
+            g.drawString(r.fibers[f], LEFT + w + 30, TOP + 20 + f * 18);
+        }
+    }
+
+    private void paintHeatmap(Graphics2D g, int w, int h) {
+        int nx = r.nx(), ny = r.ny();
+        if (heat == null) {
+            heat = new java.awt.image.BufferedImage(nx, ny, java.awt.image.BufferedImage.TYPE_INT_RGB);
+            for (int iy = 0; iy < ny; iy++) {
+                for (int ix = 0; ix < nx; ix++) {
+                    int p = iy * nx + ix;
+                    int t = r.tenths(p, heatFiber);
+                    // Blue (0%) to red (100%); label changes (the sweep's boundaries) in black
+                    int rgb = r.boundary.get(p) ? 0 : Color.HSBtoRGB(0.66f * (1f - t / 1000f), 0.8f, 0.95f);
+                    heat.setRGB(ix, ny - 1 - iy, rgb);
+                }
+            }
+        }
+        g.drawImage(heat, LEFT, TOP, w, h, null);
+        g.setColor(Color.BLACK);
+        g.drawString(r.fibers[heatFiber] + ":", LEFT + w + 15, TOP + 20);
+        for (int i = 0; i <= 10; i++) {
+            g.setColor(new Color(Color.HSBtoRGB(0.66f * (1f - i / 10f), 0.8f, 0.95f)));
+            g.fillRect(LEFT + w + 15, TOP + 30 + (10 - i) * 15, 15, 15);
+            g.setColor(Color.BLACK);
+            g.drawString((i * 10) + " %", LEFT + w + 35, TOP + 42 + (10 - i) * 15);
+        }
+    }
+
+    @Override
+    public String getToolTipText(java.awt.event.MouseEvent e) {
+        int w = plotWidth(), h = plotHeight();
+        int px = e.getX() - LEFT, py = e.getY() - TOP;
+        if (px < 0 || py < 0 || px > w || py > h) return null;
+        int ix = (int) ((long) px * (r.nx() - 1) / w);
+        int iy = r.y == null ? 0 : (int) ((long) (h - py) * (r.ny() - 1) / h);
+        int p = iy * r.nx() + ix;
+
+        StringBuilder sb = new StringBuilder("<html>");
+        char dec = Numbers.decimalSeparator(Text.current.locale);
+        sb.append(yarnNames[r.x.yarn]).append(": ");
+        Numbers.appendFixed(sb, r.x.value(ix), 2, dec).append(" g");
+        if (r.y != null) {
+            sb.append("<br>").append(yarnNames[r.y.yarn]).append(": ");
+            Numbers.appendFixed(sb, r.y.value(iy), 2, dec).append(" g");
+        }
+        for (int f = 0; f < r.fibers.length; f++) {
+            sb.append("<br>").append(r.fibers[f]).append(": ");
+            Numbers.appendFixed(sb, r.tenths(p, f) / 10.0, 1, dec).append(" %");
+        }
+        return sb.append("</html>").toString();
+    }
+
+    private int plotWidth() { return getWidth() - LEFT - RIGHT; }
+    private int plotHeight() { return getHeight() - TOP - BOTTOM; }
+}
+
+// --- Result Export ---
+
+// Streams composition results to a CSV or JSON file through a fixed-size buffer, so
+// the memory use does not depend on the number of rows. CSV has one row per recipe
+// and fiber; JSON one object per recipe. Numbers use the decimal separator of the
+// given locale in CSV (Locale.ROOT for a neutral "1.5"); JSON numbers are always neutral.
+class ResultWriter implements java.io.Closeable {
+    enum Format { CSV, JSON }
+
+    private static final int BUFFER = 32 * 1024;
+
+    private final java.nio.channels.FileChannel channel;
+    private final java.nio.charset.CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final java.nio.CharBuffer chars = java.nio.CharBuffer.allocate(BUFFER);
+    private final java.nio.ByteBuffer bytes = java.nio.ByteBuffer.allocate(BUFFER * 3);
+    private final Format format;
+    private final char decimalSep, fieldSep;
+    private final char[] digits = new char[20];
+    private final StringBuilder scratch = new StringBuilder();
+
+    private long rows;
+    private boolean firstRecipe = true, firstShare;
+    private final StringBuilder recipe = new StringBuilder();   // CSV: escaped label + total, repeated on each row
+
+    private ResultWriter(java.nio.channels.FileChannel channel, Format format, Locale numbers) {
+        this.channel = channel;
+        this.format = format;
+        char dec = Numbers.decimalSeparator(numbers);
+        this.decimalSep = format == Format.JSON ? '.' : dec;
+        this.fieldSep = decimalSep == ',' ? ';' : ',';
+    }
+
+    static ResultWriter open(File f, Format format, Locale numbers) throws IOException {
+        java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(f.toPath(),
+                java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.WRITE,
+                java.nio.file.StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ResultWriter w = new ResultWriter(channel, format, numbers);
+            if (format == Format.CSV) {
+                // BOM so spreadsheet programs detect UTF-8 (umlauts in fiber names)
+                w.put('\uFEFF');
+                w.csvField(Text.get("col_recipe")); w.put(w.fieldSep);
+                w.csvField(Text.get("col_total")); w.put(w.fieldSep);
+                w.csvField(Text.get("col_fiber")); w.put(w.fieldSep);
+                w.csvField(Text.get("col_share")); w.put('\n');
+            } else {
+                w.put('[');
+            }
+            return w;
+        } catch (IOException | RuntimeException e) {
+            // The caller never gets a writer to close
+            try { channel.close(); } catch (IOException suppressed) { e.addSuppressed(suppressed); }
+            throw e;
+        }
+    }
+
+    long getRows() { return rows; }
+
+    void beginRecipe(CharSequence label, double totalGrams) throws IOException {
+        firstShare = true;
+        if (format == Format.CSV) {
+            recipe.setLength(0);
+            csvEscape(label, recipe);
+            recipe.append(fieldSep);
+            appendNumber(recipe, totalGrams, 2);
+            recipe.append(fieldSep);
+        } else {
+            put(firstRecipe ? "\n" : ",\n");
+            put("{\"recipe\":");
+            jsonString(label);
+            put(",\"total_g\":");
+            putNumber(totalGrams, 2);
+            put(",\"fibers\":[");
+        }
+        firstRecipe = false;
+    }
+
+    void share(String fiber, int tenths) throws IOException {
+        if (format == Format.CSV) {
+            put(recipe);
+            csvField(fiber);
+            put(fieldSep);
+        } else {
+            if (!firstShare) put(',');
+            put("{\"name\":");
+            jsonString(fiber);
+            put(",\"share\":");
+        }
+        putTenths(tenths);
+        put(format == Format.CSV ? "\n" : "}");
+        firstShare = false;
+        rows++;
+    }
+
+    void endRecipe() throws IOException {
+        if (format == Format.JSON) put("]}");
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (format == Format.JSON) put(firstRecipe ? "]\n" : "\n]\n");
+            flush(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Appends d with the given number of decimals and this writer's decimal separator
+    void appendNumber(StringBuilder sb, double d, int decimals) {
+        Numbers.appendFixed(sb, d, decimals, decimalSep);
+    }
+
+    private void putNumber(double d, int decimals) throws IOException {
+        scratch.setLength(0);
+        appendNumber(scratch, d, decimals);
+        put(scratch);
+    }
+
+    private void putTenths(int tenths) throws IOException {
+        if (tenths < 0) { put('-'); tenths = -tenths; }
+        putLong(tenths / 10);
+        put(decimalSep);
+        put((char) ('0' + tenths % 10));
+    }
+
+    private void putLong(long v) throws IOException {
+        int i = digits.length;
+        do { digits[--i] = (char) ('0' + v % 10); v /= 10; } while (v > 0);
+        while (i < digits.length) put(digits[i++]);
+    }
+
+    private void csvField(CharSequence s) throws IOException {
+        scratch.setLength(0);
+        csvEscape(s, scratch);
+        put(scratch);
+    }
+
+    private void csvEscape(CharSequence s, StringBuilder out) {
+        boolean quote = false;
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == fieldSep || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) { out.append(s); return; }
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') out.append('"');
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    private void jsonString(CharSequence s) throws IOException {
+        put('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') { put('\\'); put(c); }
+            else if (c < 0x20) { put(String.format(Locale.ROOT, "\\u%04x", (int) c)); }
+            else put(c);
+        }
+        put('"');
+    }
+
+    private void put(CharSequence s) throws IOException {
+        for (int i = 0; i < s.length(); i++) put(s.charAt(i));
+    }
+
+    private void put(char c) throws IOException {
+        if (!chars.hasRemaining()) flush(false);
+        chars.put(c);
+    }
+
+    private void flush(boolean end) throws IOException {
+        chars.flip();
+        while (true) {
+            java.nio.charset.CoderResult cr = encoder.encode(chars, bytes, end);
+            if (cr.isError()) cr.throwException();
+            drain();
+            if (cr.isUnderflow()) break;
+        }
+        if (end) {
+            encoder.flush(bytes);
+            drain();
+        }
+        // A trailing high surrogate stays in the buffer for the next round
+        chars.compact();
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) channel.write(bytes);
+        bytes.clear();
+    }
+}
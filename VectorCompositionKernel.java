@@ -0,0 +1,57 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+// SIMD version of ScalarCompositionKernel using the (incubating) Vector API. The lanes
+// are recipes, so a recipe with only a few fibers still fills the vectors.
+// Compile and run with --add-modules jdk.incubator.vector, see README.
+// CompositionKernels.best() calls it through a method handle, so it uses no types of
+// GarnRechnerProzedural.java and gets the number of recipes per pass from there.
+public final class VectorCompositionKernel {
+    private static final VectorSpecies<Double> S = DoubleVector.SPECIES_PREFERRED;
+
+    // Same contract as CompositionKernel.evaluate; block: recipes per pass
+    public void evaluate(double[] grams, int recipes, int yarns, double[] fractions, int fibers, double[] out, int block) {
+        for (int from = 0; from < recipes; from += block) {
+            int to = Math.min(recipes, from + block);
+            int bound = from + S.loopBound(to - from);
+            for (int f = 0; f < fibers; f++) Arrays.fill(out, f * recipes + from, f * recipes + to, 0.0);
+            for (int y = 0; y < yarns; y++) {
+                int g = y * recipes;
+                for (int f = 0; f < fibers; f++) {
+                    double frac = fractions[y * fibers + f];
+                    if (frac == 0.0) continue;   // a yarn has only a few of the fibers
+                    DoubleVector fv = DoubleVector.broadcast(S, frac);
+                    int o = f * recipes;
+                    int r = from;
+                    for (; r < bound; r += S.length()) {
+                        DoubleVector acc = DoubleVector.fromArray(S, out, o + r);
+                        DoubleVector.fromArray(S, grams, g + r).fma(fv, acc).intoArray(out, o + r);
+                    }
+                    for (; r < to; r++) out[o + r] += frac * grams[g + r];
+                }
+            }
+            int r = from;
+            for (; r < bound; r += S.length()) {
+                DoubleVector total = DoubleVector.zero(S);
+                for (int y = 0; y < yarns; y++) total = total.add(DoubleVector.fromArray(S, grams, y * recipes + r));
+                VectorMask<Double> empty = total.compare(VectorOperators.LE, 0.0);
+                DoubleVector scale = DoubleVector.broadcast(S, 100.0).div(total).blend(0.0, empty);
+                for (int f = 0; f < fibers; f++) {
+                    DoubleVector.fromArray(S, out, f * recipes + r).mul(scale).intoArray(out, f * recipes + r);
+                }
+            }
+            for (; r < to; r++) {
+                double total = 0.0;
+                for (int y = 0; y < yarns; y++) total += grams[y * recipes + r];
+                double scale = total > 0.0 ? 100.0 / total : 0.0;
+                for (int f = 0; f < fibers; f++) out[f * recipes + r] *= scale;
+            }
+        }
+    }
+
+    public String name() { return "vector" + S.length(); }
+}